@@ -3,6 +3,14 @@ set -e
 
 # This hack is needed because GitHub Actions will only pass the env vars through the command line.
 # We assume that they are in the following order:
-# B2_APP_KEY_ID, B2_APP_KEY, CF_KEY
+# B2_APP_KEY_ID, B2_APP_KEY, CF_KEY, HTTP_CACHE, METRICS_DIR, then the shard and merge arguments
 
-B2_APP_KEY_ID=$1 B2_APP_KEY=$2 CF_KEY=$3 java -jar /app/app.jar
\ No newline at end of file
+ARGS=""
+if [ -n "$6" ]; then
+  ARGS="--shard $6"
+fi
+if [ -n "$7" ]; then
+  ARGS="$ARGS --merge $7"
+fi
+
+B2_APP_KEY_ID=$1 B2_APP_KEY=$2 CF_KEY=$3 HTTP_CACHE=$4 METRICS_DIR=$5 java -jar /app/app.jar $ARGS
\ No newline at end of file
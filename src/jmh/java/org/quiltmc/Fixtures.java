@@ -0,0 +1,87 @@
+package org.quiltmc;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Synthetic generator inputs shaped like the real Maven and launcher meta data.
+ */
+final class Fixtures {
+    /** Roughly the amount of game and loader versions published today. */
+    static final int REALISTIC_GAMES = 120;
+    static final int REALISTIC_LOADERS = 60;
+
+    final List<GameVersion> game = new ArrayList<>();
+    final List<LoaderVersion> loader = new ArrayList<>();
+    final Map<String, MavenVersion> gameHashedMojmap = new HashMap<>();
+    final Map<String, MavenVersion> gameIntermediaries = new HashMap<>();
+    final Map<String, LauncherMeta> launcherMetaData = new HashMap<>();
+
+    /**
+     * @param scale multiplier applied to the number of game x loader pairs
+     */
+    Fixtures(int scale) {
+        // Spread the growth over both axes, so that the pair count grows by the scale
+        double factor = Math.sqrt(scale);
+        int games = (int) Math.round(REALISTIC_GAMES * factor);
+        int loaders = (int) Math.round(REALISTIC_LOADERS * factor);
+
+        for (int i = 0; i < games; i++) {
+            String version = "1." + (i / 10) + "." + (i % 10);
+
+            this.game.add(new GameVersion(version, i % 3 == 0));
+            this.gameHashedMojmap.put(version, new MavenVersion(Constants.GROUP + ":hashed:" + version, version));
+            this.gameIntermediaries.put(version, new MavenVersion("net.fabricmc:intermediary:" + version, version));
+        }
+
+        for (int i = 0; i < loaders; i++) {
+            String version = "0." + (i / 10) + "." + (i % 10);
+            String maven = Constants.GROUP + ":" + Constants.LOADER_ARTIFACT + ":" + version;
+
+            this.loader.add(new LoaderVersion(".", i % 10, maven, version));
+            this.launcherMetaData.put(maven, LauncherMeta.parse(launcherMeta(i).toString()));
+        }
+    }
+
+    LoaderGenerator generator(int threads) {
+        return new LoaderGenerator(Constants.BASE_MAVEN_URL, Constants.FABRIC_MAVEN_URL,
+                this.game, this.loader, this.gameHashedMojmap, this.gameIntermediaries, this.launcherMetaData, Constants.LOADER_PAGE_SIZE, threads);
+    }
+
+    private static JsonObject launcherMeta(int seed) {
+        JsonObject meta = new JsonObject();
+        meta.addProperty("version", 1);
+
+        JsonObject libraries = new JsonObject();
+        libraries.add("client", new JsonArray());
+        libraries.add("common", libraries(seed, 12));
+        libraries.add("server", libraries(seed + 1, 1));
+        meta.add("libraries", libraries);
+
+        JsonObject mainClass = new JsonObject();
+        mainClass.addProperty("client", "org.quiltmc.loader.impl.launch.knot.KnotClient");
+        mainClass.addProperty("server", "org.quiltmc.loader.impl.launch.knot.KnotServer");
+        mainClass.addProperty("serverLauncher", "org.quiltmc.loader.impl.launch.server.QuiltServerLauncher");
+        meta.add("mainClass", mainClass);
+
+        return meta;
+    }
+
+    private static JsonArray libraries(int seed, int count) {
+        JsonArray array = new JsonArray();
+
+        for (int i = 0; i < count; i++) {
+            JsonObject library = new JsonObject();
+            library.addProperty("name", "org.example.library" + i + ":library-" + i + ":" + (seed % 7) + "." + i + ".0");
+            library.addProperty("url", i % 2 == 0 ? Constants.BASE_MAVEN_URL : Constants.FABRIC_MAVEN_URL);
+            array.add(library);
+        }
+
+        return array;
+    }
+}
@@ -0,0 +1,54 @@
+package org.quiltmc;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the game x loader generation hot path, including hashing the cache snapshots.
+ *
+ * <p>Run with {@code ./gradlew jmh}, the gc profiler reports the allocation rate next to the throughput.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class GeneratorBenchmark {
+    /** Multiplier applied to the amount of game x loader pairs, 1 is today's meta and 10 its expected future size. */
+    @Param({"1", "10"})
+    public int scale;
+
+    /** Generator threads, to measure how generation scales with the cores of the runner. */
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private LoaderGenerator generator;
+
+    @Setup
+    public void setup() {
+        this.generator = new Fixtures(this.scale).generator(this.threads);
+    }
+
+    @Benchmark
+    public int loaderVersions(Blackhole blackhole) {
+        return this.generator.generateLoaderVersions(sink(blackhole));
+    }
+
+    @Benchmark
+    public int profiles(Blackhole blackhole) {
+        return this.generator.generateProfiles(sink(blackhole), "2023-01-29T00:00:00+0000");
+    }
+
+    /**
+     * A sink that treats every file as unchanged, so payloads are hashed but never copied out of their buffer.
+     */
+    private static FileSink sink(Blackhole blackhole) {
+        return (fileName, contentType, hash, contents) -> {
+            blackhole.consume(hash);
+            blackhole.consume(contents.size());
+        };
+    }
+}
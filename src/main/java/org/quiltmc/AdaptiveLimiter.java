@@ -0,0 +1,104 @@
+package org.quiltmc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how many operations run at once, adapting the limit with additive increase / multiplicative decrease.
+ *
+ * <p>Every healthy completion grows the limit by roughly one per window of operations. When the backend throttles,
+ * the limit is halved, and when latency climbs well above the fastest observed round trip it is trimmed slightly.
+ * Decreases are spaced at least one average round trip apart, so a burst of failures from a single window only counts
+ * once.</p>
+ */
+public class AdaptiveLimiter {
+    private static final double LATENCY_TOLERANCE = 3.0;
+    private static final double LATENCY_DECREASE = 0.9;
+    private static final double THROTTLE_DECREASE = 0.5;
+    private static final long MIN_COOLDOWN_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private double limit;
+    private int inFlight;
+    private long fastestNanos = Long.MAX_VALUE;
+    private double averageNanos;
+    private long lastDecrease;
+
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > maxLimit) {
+            throw new IllegalArgumentException("Invalid limits " + minLimit + ".." + maxLimit);
+        }
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.lastDecrease = System.nanoTime();
+    }
+
+    /**
+     * Waits until fewer operations than the current limit are running.
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (this.inFlight >= (int) this.limit) {
+            this.wait();
+        }
+
+        this.inFlight++;
+    }
+
+    /**
+     * Records an operation that completed normally after {@code latencyNanos}.
+     */
+    public synchronized void onSuccess(long latencyNanos) {
+        this.fastestNanos = Math.min(this.fastestNanos, latencyNanos);
+        this.averageNanos = this.averageNanos == 0 ? latencyNanos : this.averageNanos * 0.9 + latencyNanos * 0.1;
+
+        if (this.averageNanos > this.fastestNanos * LATENCY_TOLERANCE) {
+            this.decrease(LATENCY_DECREASE);
+        } else if ((int) this.limit <= this.inFlight) {
+            // Only grow while the limit is actually what holds us back
+            this.limit = Math.min(this.maxLimit, this.limit + 1.0 / this.limit);
+        }
+
+        this.release();
+    }
+
+    /**
+     * Records an operation the backend rejected because it is overloaded.
+     */
+    public synchronized void onThrottled() {
+        this.decrease(THROTTLE_DECREASE);
+        this.release();
+    }
+
+    /**
+     * Records an operation that failed for a reason unrelated to load.
+     */
+    public synchronized void onFailure() {
+        this.release();
+    }
+
+    public synchronized int getLimit() {
+        return (int) this.limit;
+    }
+
+    public int getMaxLimit() {
+        return this.maxLimit;
+    }
+
+    private void decrease(double factor) {
+        long now = System.nanoTime();
+
+        if (now - this.lastDecrease < Math.max(MIN_COOLDOWN_NANOS, (long) this.averageNanos)) {
+            return;
+        }
+
+        this.limit = Math.max(this.minLimit, this.limit * factor);
+        this.lastDecrease = now;
+    }
+
+    private void release() {
+        this.inFlight--;
+        this.notifyAll();
+    }
+}
@@ -0,0 +1,177 @@
+package org.quiltmc;
+
+import com.backblaze.b2.client.B2StorageClient;
+import com.backblaze.b2.client.B2StorageClientFactory;
+import com.backblaze.b2.client.contentHandlers.B2ContentMemoryWriter;
+import com.backblaze.b2.client.contentSources.B2ByteArrayContentSource;
+import com.backblaze.b2.client.exceptions.B2Exception;
+import com.backblaze.b2.client.structures.B2Bucket;
+import com.backblaze.b2.client.structures.B2FileVersion;
+import com.backblaze.b2.client.structures.B2ListFileNamesRequest;
+import com.backblaze.b2.client.structures.B2UploadFileRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Storage backed by a Backblaze B2 bucket.
+ */
+public class B2Storage implements Storage {
+    // The most names one class C transaction can return
+    private static final int LIST_PAGE_SIZE = 10000;
+    private static final String UNVERIFIED_PREFIX = "unverified:";
+    private static final String MANIFEST_HASH_INFO = "manifest-hash";
+
+    private final B2StorageClient client;
+    private final String bucketName;
+    private final String bucketId;
+
+    private B2Storage(B2StorageClient client, String bucketName, String bucketId) {
+        this.client = client;
+        this.bucketName = bucketName;
+        this.bucketId = bucketId;
+    }
+
+    public static B2Storage create(String appKeyId, String appKey, String bucketName) throws IOException {
+        B2StorageClient client = B2StorageClientFactory
+                .createDefaultFactory()
+                .create(appKeyId, appKey, Constants.USER_AGENT);
+
+        try {
+            B2Bucket bucket = client.getBucketOrNullByName(bucketName);
+            if (bucket == null || bucket.getBucketId() == null) {
+                throw new IOException("Failed to find bucket " + bucketName);
+            }
+
+            return new B2Storage(client, bucketName, bucket.getBucketId());
+        } catch (B2Exception e) {
+            throw new IOException("Failed to get bucket ID for bucket " + bucketName, e);
+        }
+    }
+
+    @Override
+    public void put(String path, FileUpload file) throws IOException {
+        // Passing the known SHA-1 saves the SDK from hashing the content again before sending it
+        B2ByteArrayContentSource source = B2ByteArrayContentSource.builder(file.content())
+                .setSrcSha1OrNull(file.contentSha1() == null ? null : HexFormat.of().formatHex(file.contentSha1()))
+                .build();
+        B2UploadFileRequest.Builder builder = B2UploadFileRequest.builder(this.bucketId, path, file.contentType(), source);
+
+        // B2 serves these file infos back as the Content-Encoding and Cache-Control headers
+        if (file.contentEncoding() != null) {
+            builder.setCustomField("b2-content-encoding", file.contentEncoding());
+        }
+        if (file.cacheControl() != null) {
+            builder.setCustomField("b2-cache-control", file.cacheControl());
+        }
+        if (file.hash() != null) {
+            builder.setCustomField(MANIFEST_HASH_INFO, HexFormat.of().formatHex(file.hash()));
+        }
+
+        B2UploadFileRequest request = builder.build();
+
+        try {
+            this.client.uploadSmallFile(request);
+        } catch (B2Exception e) {
+            if (isThrottled(e.getStatus())) {
+                throw new ThrottledException("B2 throttled upload of " + path + " (" + e.getStatus() + ")", e);
+            }
+
+            throw new IOException("Failed to upload " + path, e);
+        }
+    }
+
+    @Override
+    public byte[] get(String path) throws IOException {
+        try {
+            B2ContentMemoryWriter writer = B2ContentMemoryWriter.build();
+            this.client.downloadByName(this.bucketName, path, writer);
+            return writer.getBytes();
+        } catch (B2Exception e) {
+            if (e.getStatus() == 404) {
+                return null;
+            }
+
+            throw new IOException("Failed to download " + path, e);
+        }
+    }
+
+    @Override
+    public void delete(String path) throws IOException {
+        try {
+            B2FileVersion version = this.client.getFileInfoByName(this.bucketName, path);
+            this.client.deleteFileVersion(version.getFileName(), version.getFileId());
+        } catch (B2Exception e) {
+            if (e.getStatus() == 404) {
+                return;
+            }
+
+            throw new IOException("Failed to delete " + path, e);
+        }
+    }
+
+    @Override
+    public void delete(StoredFile file) throws IOException {
+        try {
+            // The listing already gave us the file id, so there is nothing to look up
+            this.client.deleteFileVersion(file.path(), file.id());
+        } catch (B2Exception e) {
+            if (e.getStatus() == 404) {
+                return;
+            }
+
+            throw new IOException("Failed to delete " + file.path(), e);
+        }
+    }
+
+    @Override
+    public Collection<StoredFile> list() throws IOException {
+        List<StoredFile> files = new ArrayList<>();
+        B2ListFileNamesRequest request = B2ListFileNamesRequest.builder(this.bucketId)
+                .setMaxFileCount(LIST_PAGE_SIZE)
+                .build();
+
+        try {
+            for (B2FileVersion version : this.client.fileNames(request)) {
+                // Compressed files have a different SHA-1 than what the manifest recorded
+                String hash = version.getFileInfo() == null ? null : version.getFileInfo().get(MANIFEST_HASH_INFO);
+                files.add(new StoredFile(version.getFileName(), version.getFileId(), parseSha1(hash != null ? hash : version.getContentSha1())));
+            }
+        } catch (B2Exception e) {
+            throw new IOException("Failed to list bucket " + this.bucketName, e);
+        }
+
+        return files;
+    }
+
+    /**
+     * Parses the SHA-1 B2 reports for a file. B2 prefixes hashes it could not verify on upload with {@code unverified:},
+     * and reports {@code none} for large files.
+     */
+    private static byte[] parseSha1(String sha1) {
+        if (sha1 == null) {
+            return null;
+        }
+
+        if (sha1.startsWith(UNVERIFIED_PREFIX)) {
+            sha1 = sha1.substring(UNVERIFIED_PREFIX.length());
+        }
+
+        if (sha1.length() != Manifest.DIGEST_LENGTH * 2) {
+            return null;
+        }
+
+        try {
+            return HexFormat.of().parseHex(sha1);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean isThrottled(int status) {
+        return status == 408 || status == 429 || status >= 500;
+    }
+}
@@ -0,0 +1,45 @@
+package org.quiltmc;
+
+/**
+ * Picks the {@code Cache-Control} header every file is served with.
+ *
+ * <p>Files are purged from the CDN whenever they change, so the CDN may keep them for long. Browsers are not purged,
+ * so their TTL follows how often a file is expected to change: per-version files rarely change once published, while
+ * the version indexes change with every release.</p>
+ */
+final class CachePolicy {
+    /** Files of a single version, like {@code v3/versions/loader/1.19.2/0.17.0} or {@code v3/versions/hashed/1.19.2}. */
+    static final String VERSION = "public, max-age=86400, s-maxage=31536000";
+    /** Version lists and their summaries, like {@code v3/versions/game} or {@code v3/versions/loader/1.19.2/latest}. */
+    static final String INDEX = "public, max-age=60, s-maxage=86400";
+    /** Everything outside {@code v3}, which only changes with the generator itself. */
+    static final String STATIC = "public, max-age=3600, s-maxage=86400";
+
+    private CachePolicy() {
+    }
+
+    static String forPath(String path) {
+        if (!path.startsWith("v3/")) {
+            return STATIC;
+        }
+
+        // v3/versions/<kind>/<game>[/<loader>/...]
+        String[] parts = path.split("/");
+
+        if (parts.length < 4 || parts[2].equals("game")) {
+            return INDEX;
+        }
+
+        // The loaders of a game gain an entry with every loader release, and its summaries and last page move on with them
+        if (parts[2].equals("loader") && (parts.length == 4 || parts.length == 5 && isSummary(parts[4])
+                || parts.length == 6 && parts[4].equals("page"))) {
+            return INDEX;
+        }
+
+        return VERSION;
+    }
+
+    private static boolean isSummary(String name) {
+        return name.equals("latest") || name.equals("stable") || name.equals("slim") || name.equals("newest");
+    }
+}
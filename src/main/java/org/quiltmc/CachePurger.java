@@ -0,0 +1,39 @@
+package org.quiltmc;
+
+import java.util.List;
+
+/**
+ * Evicts updated files from the CDN in front of the storage.
+ */
+public interface CachePurger {
+    /** A purger for storages that are not behind a CDN. */
+    CachePurger NONE = new CachePurger() {
+        @Override
+        public void purge(List<String> urls) {
+        }
+
+        @Override
+        public void purgePrefixes(List<String> prefixes) {
+        }
+
+        @Override
+        public void purgeEverything() {
+        }
+    };
+
+    /**
+     * Purges the given absolute URLs. Blocks until the CDN accepted the request.
+     */
+    void purge(List<String> urls);
+
+    /**
+     * Purges everything under the given prefixes, which are URLs without their scheme
+     * (e.g. {@code meta.quiltmc.org/v3/versions/loader/1.19.2/}). Blocks until the CDN accepted the request.
+     */
+    void purgePrefixes(List<String> prefixes);
+
+    /**
+     * Purges the whole cache. Blocks until the CDN accepted the request.
+     */
+    void purgeEverything();
+}
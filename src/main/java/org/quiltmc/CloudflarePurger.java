@@ -0,0 +1,117 @@
+package org.quiltmc;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Purges files from the Cloudflare cache, staying under the API rate limits.
+ *
+ * <p>Every request takes a token from a {@link TokenBucket} shared by all callers. Large purges are split into
+ * batches, which are sent concurrently.</p>
+ */
+public class CloudflarePurger implements CachePurger {
+    private final Gson gson = new Gson();
+    private final HttpFetcher fetcher;
+    private final URI endpoint;
+    private final String key;
+    private final TokenBucket rateLimit;
+    private final ExecutorService executor;
+    private final Metrics.Stage stage;
+
+    public CloudflarePurger(HttpFetcher fetcher, URI endpoint, String key, TokenBucket rateLimit, int concurrency, Metrics.Stage stage) {
+        this.fetcher = fetcher;
+        this.endpoint = endpoint;
+        this.key = key;
+        this.rateLimit = rateLimit;
+        this.stage = stage;
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "cloudflare-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void purge(List<String> urls) {
+        this.sendBatches("files", urls);
+    }
+
+    @Override
+    public void purgePrefixes(List<String> prefixes) {
+        this.sendBatches("prefixes", prefixes);
+    }
+
+    @Override
+    public void purgeEverything() {
+        JsonObject body = new JsonObject();
+        body.addProperty("purge_everything", true);
+
+        try {
+            this.send(body);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to purge everything");
+        }
+    }
+
+    private void sendBatches(String type, List<String> values) {
+        int batches = (values.size() + Constants.CF_PURGE_LIMIT_PER_REQUEST - 1) / Constants.CF_PURGE_LIMIT_PER_REQUEST;
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[batches];
+
+        for (int i = 0; i < batches; i++) {
+            List<String> batch = values.subList(i * Constants.CF_PURGE_LIMIT_PER_REQUEST,
+                    Math.min((i + 1) * Constants.CF_PURGE_LIMIT_PER_REQUEST, values.size()));
+
+            futures[i] = CompletableFuture.runAsync(() -> {
+                JsonObject body = new JsonObject();
+                body.add(type, this.gson.toJsonTree(batch));
+
+                try {
+                    this.send(body);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    throw new RuntimeException("Failed to purge " + batch);
+                }
+            }, this.executor);
+        }
+
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private void send(JsonObject body) throws IOException {
+        try {
+            this.rateLimit.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the purge rate limit", e);
+        }
+
+        byte[] bytes = this.gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        long start = System.nanoTime();
+        HttpFetcher.Response response = this.fetcher.post(this.endpoint, Map.of(
+                "Content-Type", "application/json",
+                "Accept", "application/json",
+                "Authorization", "Bearer " + this.key
+        ), bytes);
+        this.stage.record(bytes.length, System.nanoTime() - start);
+
+        // Check the status code
+        if (response.status() != 200) {
+            throw new IOException("Failed to purge batch (status code " + response.status() + "): " + new String(response.body(), StandardCharsets.UTF_8));
+        }
+    }
+}
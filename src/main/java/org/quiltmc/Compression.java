@@ -0,0 +1,49 @@
+package org.quiltmc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses payloads before they are uploaded, so the storage and the CDN serve them pre-compressed.
+ */
+final class Compression {
+    static final String GZIP = "gzip";
+
+    // Below this, the gzip header and trailer eat most of the savings
+    private static final int MIN_SIZE = 1024;
+    private static final Set<String> COMPRESSIBLE_TYPES = Set.of("application/json", "text/html", "text/yaml", "text/css", "text/javascript");
+
+    private Compression() {
+    }
+
+    /**
+     * Checks whether a payload is worth compressing.
+     */
+    static boolean shouldCompress(String contentType, int size) {
+        return size >= MIN_SIZE && COMPRESSIBLE_TYPES.contains(contentType);
+    }
+
+    /**
+     * Compresses a payload with gzip at the highest level. Every file is compressed once per change, but served many
+     * times, so the extra CPU time pays for itself.
+     */
+    static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 4);
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                this.def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(content);
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new RuntimeException(e);
+        }
+
+        return out.toByteArray();
+    }
+}
@@ -1,7 +1,8 @@
 package org.quiltmc;
 
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
 import java.util.Objects;
 
 public final class Constants {
@@ -12,10 +13,39 @@ public final class Constants {
 
     static final String GROUP = "org.quiltmc";
 
+    // Storage: "b2" (default), "memory", or "file:<directory>"
+    static final String STORAGE = Objects.requireNonNullElse(System.getenv("STORAGE"), "b2");
+
     // Maven
     static final String BASE_MAVEN_URL = "https://maven.quiltmc.org/repository/release/";
     static final String FABRIC_MAVEN_URL = "https://maven.fabricmc.net/";
 
+    // HTTP, timeouts are in seconds
+    static final Duration HTTP_CONNECT_TIMEOUT = Duration.ofSeconds(Long.parseLong(Objects.requireNonNullElse(System.getenv("HTTP_CONNECT_TIMEOUT"), "10")));
+    static final Duration HTTP_REQUEST_TIMEOUT = Duration.ofSeconds(Long.parseLong(Objects.requireNonNullElse(System.getenv("HTTP_REQUEST_TIMEOUT"), "30")));
+    static final int HTTP_MAX_ATTEMPTS = 4;
+
+    // Concurrent requests allowed per host, and the fetch threads used when virtual threads are unavailable
+    static final Map<String, Integer> HOST_PERMITS = Map.of(
+            "maven.quiltmc.org", 8,
+            "maven.fabricmc.net", 4,
+            "launchermeta.mojang.com", 4,
+            "api.cloudflare.com", 8
+    );
+    static final int DEFAULT_HOST_PERMITS = 4;
+    static final int FETCH_THREADS = 16;
+
+    // Directory upstream files are cached in between runs, caching is disabled when unset
+    static final String HTTP_CACHE = System.getenv("HTTP_CACHE");
+    static final long HTTP_CACHE_MAX_SIZE = 256L * 1024 * 1024;
+
+    // Metrics: directory metrics.json and metrics.prom are written to, and the GitHub Actions step summary file
+    static final String METRICS_DIR = System.getenv("METRICS_DIR");
+    static final String GITHUB_STEP_SUMMARY = System.getenv("GITHUB_STEP_SUMMARY");
+
+    // Upstream snapshot: unset (live), "record:<file>" or "replay:<file>"
+    static final String UPSTREAM_SNAPSHOT = System.getenv("UPSTREAM_SNAPSHOT");
+
     static final String LOADER_ARTIFACT = "quilt-loader";
     static final String INSTALLER_ARTIFACT = "quilt-installer";
 
@@ -27,21 +57,43 @@ public final class Constants {
     // Cloudflare
     static final String CF_ZONE_ID = "73c99d057aa12563eb4cad4ef14f0796";
     static final String CF_KEY = System.getenv("CF_KEY");
-    static final URL CF_PURGE_FILES_ENDPOINT;
-
-    static {
-        try {
-            CF_PURGE_FILES_ENDPOINT = new URL("https://api.cloudflare.com/client/v4/zones/" + CF_ZONE_ID + "/purge_cache");
-        } catch (MalformedURLException e) {
-            throw new RuntimeException(e);
-        }
-    }
+    static final URI CF_PURGE_FILES_ENDPOINT = URI.create("https://api.cloudflare.com/client/v4/zones/" + CF_ZONE_ID + "/purge_cache");
 
     static final int CF_PURGE_LIMIT_PER_MINUTE = 1000;
     static final int CF_PURGE_LIMIT_PER_REQUEST = 30;
+    static final int CF_PURGE_CONCURRENCY = 8;
+    // Beyond a minute worth of purge requests, purging the whole cache is quicker
+    static final int CF_PURGE_EVERYTHING_THRESHOLD = CF_PURGE_LIMIT_PER_MINUTE * CF_PURGE_LIMIT_PER_REQUEST;
+
+    // Generation, the number of threads game versions are spread over
+    static final int GENERATOR_THREADS = Integer.parseInt(Objects.requireNonNullElse(System.getenv("GENERATOR_THREADS"),
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+    // Loader versions in every page of v3/versions/loader/<game>/page/<page>, and in v3/versions/loader/<game>/newest
+    static final int LOADER_PAGE_SIZE = 20;
+
+    // Sync
+    static final int UPLOAD_THREADS = 50;
+    static final int MAX_UPLOADS_IN_FLIGHT = 200;
+    // Upload concurrency starts here and is adjusted between the min and max depending on how B2 responds
+    static final int INITIAL_UPLOAD_CONCURRENCY = 16;
+    static final int MIN_UPLOAD_CONCURRENCY = 2;
+    static final int MAX_UPLOAD_CONCURRENCY = 100;
+    static final int UPLOAD_MAX_ATTEMPTS = 6;
+    // Recently prepared payloads kept around for files with identical contents, which are generated close together
+    static final int PAYLOAD_CACHE_ENTRIES = 64;
+
+    // Runs normally stop early when no upstream file changed since the last run, this forces a full run
+    static final boolean FORCE_REBUILD = Boolean.parseBoolean(System.getenv("FORCE_REBUILD"));
 
     // Internal
-    static final String MANIFEST_FILE = "_manifest_01.gz";
+    static final String MANIFEST_FILE = "_manifest_02.bin";
+    static final String FINGERPRINTS_FILE = "_fingerprints_02.bin";
+    // Text manifests written by older versions, only read when migrating
+    static final String LEGACY_MANIFEST_FILE = "_manifest_01.gz";
+    static final String LEGACY_FINGERPRINTS_FILE = "_fingerprints_01.gz";
+    // Log of the work a failed run completed, checkpointed to the storage at most this often
+    static final String JOURNAL_FILE = "_journal_01.gz";
+    static final long JOURNAL_CHECKPOINT_INTERVAL_MILLIS = 30 * 1000;
 
     private Constants() {}
 }
@@ -0,0 +1,37 @@
+package org.quiltmc;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executor the fetch phase runs on.
+ *
+ * <p>Fetch tasks spend nearly all their time blocked on the network, and the {@link HostLimiter} already bounds
+ * how many requests run at once. On Java 21 and later every task gets its own virtual thread. The build still
+ * targets Java 17, so older runtimes fall back to a fixed pool of platform threads instead of an unbounded one.</p>
+ */
+public final class FetchScheduler {
+    static final String THREAD_NAME = "fetch";
+
+    private FetchScheduler() {
+    }
+
+    public static ExecutorService create(int fallbackThreads) {
+        try {
+            // Looked up reflectively, as the method does not exist in the Java 17 API the build compiles against
+            return (ExecutorService) MethodHandles.publicLookup()
+                    .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class))
+                    .invokeExact();
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return Executors.newFixedThreadPool(fallbackThreads, runnable -> {
+                Thread thread = new Thread(runnable, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to create the fetch executor", e);
+        }
+    }
+}
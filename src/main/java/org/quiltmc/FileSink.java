@@ -0,0 +1,44 @@
+package org.quiltmc;
+
+/**
+ * Receives the files produced by the generator.
+ */
+@FunctionalInterface
+public interface FileSink {
+    /**
+     * Accepts a generated file. The buffer is reused once this returns, so its contents must be copied to be kept.
+     *
+     * @param hash the SHA-1 of the deterministic part of the contents, used to tell whether the file changed
+     */
+    void accept(String fileName, String contentType, byte[] hash, HashingBuffer contents);
+
+    /**
+     * Serializes a JSON file and accepts it, hashing its whole contents.
+     */
+    default void acceptJson(String fileName, JsonContent json) {
+        HashingBuffer buffer = HashingBuffer.get();
+        buffer.writeJson(json);
+        this.accept(fileName, "application/json", buffer.hash(), buffer);
+    }
+
+    /**
+     * Called before generating a file, with a fingerprint of everything the file is generated from.
+     *
+     * @return {@code true} if the file is known to be up-to-date, in which case it is not generated at all
+     */
+    default boolean skipUnchanged(String fileName, byte[] fingerprint) {
+        return false;
+    }
+
+    /**
+     * Called before generating a directory, with a fingerprint of everything the directory is generated from.
+     *
+     * <p>The directory covers the file at {@code directory} and every file under {@code directory/}. Its fingerprint
+     * combines those of the inputs of all of them, so a single comparison tells whether any of them changed.</p>
+     *
+     * @return {@code true} if the whole directory is known to be up-to-date, in which case none of it is generated
+     */
+    default boolean skipUnchangedTree(String directory, byte[] fingerprint) {
+        return false;
+    }
+}
@@ -0,0 +1,99 @@
+package org.quiltmc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Storage that writes files into a local directory.
+ *
+ * <p>Meta paths are both files and directories (e.g. {@code v3/versions/loader/1.19.2} and
+ * {@code v3/versions/loader/1.19.2/0.17.0}), so every file is stored with a {@value #SUFFIX}
+ * suffix. Content types and cache policies are not persisted, and compressed files are stored decompressed so the
+ * directory stays readable.</p>
+ */
+public class FileSystemStorage implements Storage {
+    private static final String SUFFIX = ".blob";
+
+    private final Path root;
+
+    public FileSystemStorage(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public void put(String path, FileUpload upload) throws IOException {
+        byte[] content = upload.content();
+        if (Compression.GZIP.equals(upload.contentEncoding())) {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(content))) {
+                content = in.readAllBytes();
+            }
+        }
+
+        Path file = this.resolve(path);
+        Files.createDirectories(file.getParent());
+
+        // Write to a sibling first so readers never observe a half-written file
+        Path temp = Files.createTempFile(file.getParent(), ".upload", ".tmp");
+        Files.write(temp, content);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public byte[] get(String path) throws IOException {
+        try {
+            return Files.readAllBytes(this.resolve(path));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void delete(String path) throws IOException {
+        Files.deleteIfExists(this.resolve(path));
+    }
+
+    @Override
+    public Collection<StoredFile> list() throws IOException {
+        if (!Files.isDirectory(this.root)) {
+            return List.of();
+        }
+
+        try (Stream<Path> files = Files.walk(this.root)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                    .map(file -> {
+                        String name = this.root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                        name = name.substring(0, name.length() - SUFFIX.length());
+
+                        try {
+                            return new StoredFile(name, name, HashingBuffer.sha1(Files.readAllBytes(file)));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Path resolve(String path) throws IOException {
+        Path file = this.root.resolve(path + SUFFIX).normalize();
+
+        if (!file.startsWith(this.root)) {
+            throw new IOException("Path escapes the storage root: " + path);
+        }
+
+        return file;
+    }
+}
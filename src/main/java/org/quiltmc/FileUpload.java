@@ -1,11 +1,16 @@
 package org.quiltmc;
 
-public record FileUpload(byte[] content, String contentType) {
-    public byte[] content() {
-        return content;
+/**
+ * A file ready to be stored.
+ *
+ * @param contentEncoding the encoding the content is compressed with, or {@code null} if it is stored as is
+ * @param cacheControl    the {@code Cache-Control} header to serve the file with, or {@code null} for the default
+ * @param hash            the hash the manifest records for the file, or {@code null}. Kept alongside the file, so the
+ *                        manifest can be rebuilt from the storage
+ * @param contentSha1     the SHA-1 of the content if it is already known, or {@code null} to let the storage compute it
+ */
+public record FileUpload(byte[] content, String contentType, String contentEncoding, String cacheControl, byte[] hash, byte[] contentSha1) {
+    public FileUpload(byte[] content, String contentType) {
+        this(content, contentType, null, null, null, null);
     }
-
-    public String contentType() {
-        return contentType;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package org.quiltmc;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Summarizes the inputs a generated file was built from, so the file can be skipped when none of them changed.
+ */
+final class Fingerprint {
+    /**
+     * Bump this whenever the generator output changes for the same inputs, to invalidate every recorded fingerprint.
+     */
+    static final int VERSION = 2;
+
+    private Fingerprint() {
+    }
+
+    /**
+     * Hashes the given parts. Every part is length prefixed, so moving text between parts changes the fingerprint.
+     */
+    static byte[] of(String... parts) {
+        MessageDigest digest = newDigest();
+
+        for (String part : parts) {
+            update(digest, part.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return digest.digest();
+    }
+
+    /**
+     * Combines fingerprints of separate inputs into the fingerprint of one output.
+     *
+     * @param kind the kind of output, so different files built from the same inputs get different fingerprints
+     */
+    static byte[] combine(String kind, byte[]... fingerprints) {
+        MessageDigest digest = newDigest();
+        update(digest, kind.getBytes(StandardCharsets.UTF_8));
+
+        for (byte[] fingerprint : fingerprints) {
+            update(digest, fingerprint);
+        }
+
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to get SHA-1 digest");
+        }
+
+        digest.update((byte) VERSION);
+        return digest;
+    }
+
+    private static void update(MessageDigest digest, byte[] bytes) {
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+}
@@ -0,0 +1,18 @@
+package org.quiltmc;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * A game version that has hashed mappings, as listed in {@code v3/versions/game}.
+ */
+public record GameVersion(String version, boolean stable) implements JsonContent {
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("version").value(this.version);
+        out.name("stable").value(this.stable);
+        out.endObject();
+    }
+}
@@ -0,0 +1,124 @@
+package org.quiltmc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * A reusable per-thread output buffer that hashes everything written to it as it is written.
+ *
+ * <p>Files are serialized straight into the buffer, so the hash and the payload come out of a single pass.
+ * Unchanged files never leave the buffer, and only changed files are copied out with {@link #toByteArray()}.</p>
+ */
+public final class HashingBuffer extends OutputStream {
+    private static final ThreadLocal<HashingBuffer> BUFFERS = ThreadLocal.withInitial(HashingBuffer::new);
+
+    private final MessageDigest digest;
+    private final Writer writer = new OutputStreamWriter(this, StandardCharsets.UTF_8);
+    private byte[] buffer = new byte[16 * 1024];
+    private int count;
+
+    private HashingBuffer() {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to get SHA-1 digest");
+        }
+    }
+
+    /**
+     * Gets the buffer of the current thread, emptied. Anything previously written to it is discarded.
+     */
+    public static HashingBuffer get() {
+        HashingBuffer buffer = BUFFERS.get();
+        buffer.reset();
+        return buffer;
+    }
+
+    /**
+     * Hashes a payload that is already in memory, without going through a buffer.
+     */
+    public static byte[] sha1(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to get SHA-1 digest");
+        }
+    }
+
+    public void reset() {
+        this.count = 0;
+        this.digest.reset();
+    }
+
+    @Override
+    public void write(int b) {
+        this.ensureCapacity(this.count + 1);
+        this.buffer[this.count++] = (byte) b;
+        this.digest.update((byte) b);
+    }
+
+    @Override
+    public void write(byte[] bytes) {
+        this.write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        this.ensureCapacity(this.count + length);
+        System.arraycopy(bytes, offset, this.buffer, this.count, length);
+        this.count += length;
+        this.digest.update(bytes, offset, length);
+    }
+
+    /**
+     * Streams a JSON value into the buffer.
+     */
+    public void writeJson(JsonContent json) {
+        try {
+            json.write(JsonContent.newWriter(this.writer));
+            this.writer.flush();
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Feeds bytes into the hash without adding them to the buffer.
+     */
+    public void hashOnly(byte[] bytes) {
+        this.digest.update(bytes);
+    }
+
+    /**
+     * Completes the SHA-1 hash of everything written so far. Bytes written afterwards are no longer part of any hash.
+     */
+    public byte[] hash() {
+        return this.digest.digest();
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Copies the buffered payload out.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(this.buffer, this.count);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(capacity, this.buffer.length * 2));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.quiltmc;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps the number of concurrent requests made to each host, so no single server gets hammered.
+ */
+public class HostLimiter {
+    private final Map<String, Integer> permits;
+    private final int defaultPermits;
+    private final Map<String, Semaphore> semaphores = new ConcurrentHashMap<>();
+
+    /**
+     * @param permits the concurrent requests allowed per host name
+     * @param defaultPermits the concurrent requests allowed to any other host
+     */
+    public HostLimiter(Map<String, Integer> permits, int defaultPermits) {
+        this.permits = permits;
+        this.defaultPermits = defaultPermits;
+    }
+
+    /**
+     * Blocks until a request to the host of the URI may start. Every acquired permit must be {@link #release(URI) released}.
+     */
+    public void acquire(URI uri) throws IOException {
+        try {
+            this.semaphore(uri).acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to request " + uri, e);
+        }
+    }
+
+    public void release(URI uri) {
+        this.semaphore(uri).release();
+    }
+
+    private Semaphore semaphore(URI uri) {
+        String host = String.valueOf(uri.getHost());
+        return this.semaphores.computeIfAbsent(host, h -> new Semaphore(this.permits.getOrDefault(h, this.defaultPermits), true));
+    }
+}
@@ -0,0 +1,210 @@
+package org.quiltmc;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Downloads upstream files, keeping them in an on-disk cache between runs.
+ *
+ * <p>Mutable files, like {@code maven-metadata.xml}, are revalidated with their {@code ETag} and
+ * {@code Last-Modified} headers on every request. Release artifacts never change once published,
+ * so they are served straight from the cache without any request. The least recently used entries are evicted
+ * once the cache grows past its size limit.</p>
+ */
+public class HttpCache implements Upstream {
+    private static final String IMMUTABLE = "immutable";
+    private static final String REVALIDATED = "revalidated";
+    private static final String META_SUFFIX = ".meta";
+
+    private final HttpFetcher fetcher;
+    private final Path root;
+    private final long maxSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder downloads = new LongAdder();
+
+    /**
+     * @param root the cache directory, or {@code null} to always download
+     */
+    public HttpCache(HttpFetcher fetcher, Path root, long maxSize) {
+        this.fetcher = fetcher;
+        this.root = root;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets a file that may change upstream, revalidating the cached copy if there is one.
+     */
+    @Override
+    public byte[] get(String url) throws IOException {
+        if (this.root == null) {
+            return this.download(url, Map.of()).body();
+        }
+
+        Path body = this.entry(REVALIDATED, url);
+        Path meta = body.resolveSibling(body.getFileName() + META_SUFFIX);
+        Properties properties = new Properties();
+        Map<String, String> headers = new HashMap<>();
+
+        if (Files.exists(body) && Files.exists(meta)) {
+            try (Reader reader = Files.newBufferedReader(meta, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+
+            if (properties.containsKey("etag")) {
+                headers.put("If-None-Match", properties.getProperty("etag"));
+            }
+            if (properties.containsKey("lastModified")) {
+                headers.put("If-Modified-Since", properties.getProperty("lastModified"));
+            }
+        }
+
+        HttpFetcher.Response response = this.download(url, headers);
+
+        if (response.status() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            this.notModified.increment();
+            Files.setLastModifiedTime(body, FileTime.fromMillis(System.currentTimeMillis()));
+            return Files.readAllBytes(body);
+        }
+
+        properties.clear();
+        properties.setProperty("url", url);
+        if (response.etag() != null) {
+            properties.setProperty("etag", response.etag());
+        }
+        if (response.lastModified() != null) {
+            properties.setProperty("lastModified", response.lastModified());
+        }
+
+        StringWriter writer = new StringWriter();
+        properties.store(writer, null);
+
+        write(body, response.body());
+        write(meta, writer.toString().getBytes(StandardCharsets.UTF_8));
+
+        return response.body();
+    }
+
+    /**
+     * Gets a file that never changes once published, such as a released artifact.
+     */
+    @Override
+    public byte[] getImmutable(String url) throws IOException {
+        if (this.root == null) {
+            return this.download(url, Map.of()).body();
+        }
+
+        Path body = this.entry(IMMUTABLE, url);
+
+        try {
+            byte[] cached = Files.readAllBytes(body);
+            this.hits.increment();
+            Files.setLastModifiedTime(body, FileTime.fromMillis(System.currentTimeMillis()));
+            return cached;
+        } catch (NoSuchFileException e) {
+            HttpFetcher.Response response = this.download(url, Map.of());
+            write(body, response.body());
+            return response.body();
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits its size limit.
+     */
+    public void evict() throws IOException {
+        if (this.root == null || !Files.isDirectory(this.root)) {
+            return;
+        }
+
+        // Group bodies with their meta files, so both are evicted together
+        Map<Path, List<Path>> entries;
+        try (Stream<Path> files = Files.walk(this.root)) {
+            entries = files.filter(Files::isRegularFile).collect(Collectors.groupingBy(file -> {
+                String name = file.getFileName().toString();
+                return name.endsWith(META_SUFFIX) ? file.resolveSibling(name.substring(0, name.length() - META_SUFFIX.length())) : file;
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        long size = 0;
+        List<Map.Entry<Path, FileTime>> byAge = new ArrayList<>();
+        for (Map.Entry<Path, List<Path>> entry : entries.entrySet()) {
+            for (Path file : entry.getValue()) {
+                size += Files.size(file);
+            }
+
+            FileTime lastUsed = Files.exists(entry.getKey()) ? Files.getLastModifiedTime(entry.getKey()) : FileTime.fromMillis(0);
+            byAge.add(Map.entry(entry.getKey(), lastUsed));
+        }
+
+        byAge.sort(Map.Entry.comparingByValue());
+
+        int evicted = 0;
+        for (Map.Entry<Path, FileTime> entry : byAge) {
+            if (size <= this.maxSize) {
+                break;
+            }
+
+            for (Path file : entries.get(entry.getKey())) {
+                size -= Files.size(file);
+                Files.deleteIfExists(file);
+            }
+            evicted++;
+        }
+
+        if (evicted > 0) {
+            System.out.println("[INFO] Evicted " + evicted + " HTTP cache entries");
+        }
+    }
+
+    @Override
+    public String getStats() {
+        return this.hits.sum() + " cached, " + this.notModified.sum() + " not modified, " + this.downloads.sum() + " downloaded";
+    }
+
+    private HttpFetcher.Response download(String url, Map<String, String> headers) throws IOException {
+        HttpFetcher.Response response = this.fetcher.get(url, headers);
+
+        if (response.status() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            return response;
+        }
+        if (response.status() != HttpURLConnection.HTTP_OK) {
+            throw new IOException("Failed to download " + url + " (status code " + response.status() + ")");
+        }
+
+        this.downloads.increment();
+        return response;
+    }
+
+    private Path entry(String kind, String url) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to get SHA-1 digest");
+        }
+
+        String key = HexFormat.of().formatHex(digest.digest(url.getBytes(StandardCharsets.UTF_8)));
+        return this.root.resolve(kind).resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    private static void write(Path file, byte[] content) throws IOException {
+        Files.createDirectories(file.getParent());
+
+        // Write to a sibling first so a crashed run never leaves a truncated entry behind
+        Path temp = Files.createTempFile(file.getParent(), ".download", ".tmp");
+        Files.write(temp, content);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,124 @@
+package org.quiltmc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The shared HTTP client every outbound request goes through.
+ *
+ * <p>Connections are pooled and use HTTP/2 where the server supports it. Concurrent requests to each host are
+ * capped by a {@link HostLimiter}. Responses are requested gzip compressed, every request has a timeout, and
+ * requests failing with a network error, a 429 or a 5xx status are retried with jittered exponential backoff.</p>
+ */
+public class HttpFetcher {
+    private static final long BASE_BACKOFF_MILLIS = 500;
+
+    private final HttpClient client;
+    private final HostLimiter limiter;
+    private final Duration requestTimeout;
+    private final int maxAttempts;
+
+    public HttpFetcher(HostLimiter limiter, Duration connectTimeout, Duration requestTimeout, int maxAttempts) {
+        this.limiter = limiter;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(connectTimeout)
+                .build();
+        this.requestTimeout = requestTimeout;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Response get(String url, Map<String, String> headers) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url)).GET();
+        headers.forEach(request::header);
+
+        return this.send(request);
+    }
+
+    public Response post(URI uri, Map<String, String> headers, byte[] body) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        headers.forEach(request::header);
+
+        return this.send(request);
+    }
+
+    /**
+     * Sends a request, retrying transient failures. Any status that is not retried is returned as-is.
+     */
+    public Response send(HttpRequest.Builder builder) throws IOException {
+        HttpRequest request = builder
+                .timeout(this.requestTimeout)
+                .header("User-Agent", Constants.USER_AGENT)
+                .header("Accept-Encoding", "gzip")
+                .build();
+
+        for (int attempt = 1; ; attempt++) {
+            // The permit is only held during the request itself, not while backing off
+            this.limiter.acquire(request.uri());
+            try {
+                HttpResponse<byte[]> response = this.client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+                if (!isTransient(response.statusCode()) || attempt >= this.maxAttempts) {
+                    return new Response(response.statusCode(), decode(response), response.headers().firstValue("ETag").orElse(null),
+                            response.headers().firstValue("Last-Modified").orElse(null));
+                }
+
+                System.out.println("[WARN] " + request.method() + " " + request.uri() + " returned " + response.statusCode() + ", retrying");
+            } catch (IOException e) {
+                if (attempt >= this.maxAttempts) {
+                    throw new IOException(request.method() + " " + request.uri() + " failed after " + attempt + " attempts", e);
+                }
+
+                System.out.println("[WARN] " + request.method() + " " + request.uri() + " failed (" + e + "), retrying");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while requesting " + request.uri(), e);
+            } finally {
+                this.limiter.release(request.uri());
+            }
+
+            backoff(attempt);
+        }
+    }
+
+    private static boolean isTransient(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    private static byte[] decode(HttpResponse<byte[]> response) throws IOException {
+        if (response.body().length > 0 && response.headers().firstValue("Content-Encoding").orElse("").equalsIgnoreCase("gzip")) {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+                return in.readAllBytes();
+            }
+        }
+
+        return response.body();
+    }
+
+    private static void backoff(int attempt) throws IOException {
+        long delay = BASE_BACKOFF_MILLIS << Math.min(attempt - 1, 6);
+
+        try {
+            // Equal jitter: at least half the delay, so retries from many threads neither arrive at once nor too early
+            Thread.sleep(ThreadLocalRandom.current().nextLong(delay / 2, delay + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while backing off", e);
+        }
+    }
+
+    public record Response(int status, byte[] body, String etag, String lastModified) {
+        public boolean isSuccessful() {
+            return this.status >= 200 && this.status < 300;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.quiltmc;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * An installer release, as listed in {@code v3/versions/installer}.
+ */
+public record InstallerVersion(String url, String maven, String version) implements JsonContent {
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("url").value(this.url);
+        out.name("maven").value(this.maven);
+        out.name("version").value(this.version);
+        out.endObject();
+    }
+}
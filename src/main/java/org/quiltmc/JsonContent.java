@@ -0,0 +1,82 @@
+package org.quiltmc;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collection;
+
+/**
+ * A JSON value that streams itself to a {@link JsonWriter}, so files are serialized without building a Gson tree first.
+ */
+@FunctionalInterface
+public interface JsonContent {
+    void write(JsonWriter out) throws IOException;
+
+    /**
+     * Serializes this value on its own, with the formatting used for every file.
+     */
+    default String toJson() {
+        StringWriter writer = new StringWriter();
+
+        try {
+            this.write(newWriter(writer));
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new RuntimeException(e);
+        }
+
+        return writer.toString();
+    }
+
+    /**
+     * Creates a writer formatting exactly like a pretty printing {@link com.google.gson.Gson} with the default settings,
+     * so the published files do not change when moving from trees to streaming.
+     */
+    static JsonWriter newWriter(Writer writer) {
+        JsonWriter out = new JsonWriter(writer);
+        out.setIndent("  ");
+        out.setHtmlSafe(true);
+        out.setSerializeNulls(false);
+        return out;
+    }
+
+    static JsonContent array(Collection<? extends JsonContent> values) {
+        return out -> {
+            out.beginArray();
+            for (JsonContent value : values) {
+                value.write(out);
+            }
+            out.endArray();
+        };
+    }
+
+    static JsonContent strings(Collection<String> values) {
+        return out -> {
+            out.beginArray();
+            for (String value : values) {
+                out.value(value);
+            }
+            out.endArray();
+        };
+    }
+
+    /**
+     * Quotes and escapes a string the way it appears in a file.
+     */
+    static String quote(String value) {
+        return ((JsonContent) out -> out.value(value)).toJson();
+    }
+
+    /**
+     * Writes a value that may be missing. Missing values are left out along with their name, like Gson does.
+     */
+    static void writeNullable(JsonWriter out, JsonContent value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            value.write(out);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.quiltmc;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.util.*;
+
+/**
+ * The launcher meta published next to every loader jar, describing how to launch that loader version.
+ *
+ * @param mainClass the main class for each side, empty for loaders that predate per side main classes
+ * @param libraries the libraries for each side, keyed by {@code common}, {@code client} and {@code server}
+ * @param json      the whole document, pretty printed. It is republished as is in the loader version files, so
+ *                  fields the generator has no use for are kept
+ */
+public record LauncherMeta(Map<String, String> mainClass, Map<String, List<Library>> libraries, String json) {
+    private static final Gson GSON = new Gson();
+
+    public static LauncherMeta parse(String json) {
+        JsonObject object = JsonParser.parseString(json).getAsJsonObject();
+        Map<String, String> mainClass = new HashMap<>();
+        Map<String, List<Library>> libraries = new HashMap<>();
+
+        JsonElement mainClassElement = object.get("mainClass");
+        if (mainClassElement != null && mainClassElement.isJsonObject()) {
+            for (Map.Entry<String, JsonElement> entry : mainClassElement.getAsJsonObject().entrySet()) {
+                mainClass.put(entry.getKey(), entry.getValue().getAsString());
+            }
+        }
+
+        for (Map.Entry<String, JsonElement> entry : object.getAsJsonObject("libraries").entrySet()) {
+            List<Library> sided = new ArrayList<>();
+
+            for (JsonElement library : entry.getValue().getAsJsonArray()) {
+                JsonObject libraryObject = library.getAsJsonObject();
+                JsonElement url = libraryObject.get("url");
+                sided.add(new Library(libraryObject.get("name").getAsString(), url == null ? null : url.getAsString(),
+                        ((JsonContent) out -> GSON.toJson(libraryObject, out)).toJson()));
+            }
+
+            libraries.put(entry.getKey(), List.copyOf(sided));
+        }
+
+        String pretty = ((JsonContent) out -> GSON.toJson(object, out)).toJson();
+        return new LauncherMeta(Map.copyOf(mainClass), Map.copyOf(libraries), pretty);
+    }
+
+    public String mainClass(String side) {
+        return this.mainClass.get(side);
+    }
+
+    /**
+     * @return the libraries of the side, empty if the loader lists none for it
+     */
+    public List<Library> libraries(String side) {
+        return this.libraries.getOrDefault(side, List.of());
+    }
+
+    /**
+     * Gets the document indented to be nested {@code depth} levels deep in another document.
+     */
+    String json(int depth) {
+        // Pretty printing never emits raw newlines inside strings, so the document can be indented line by line
+        return this.json.replace("\n", "\n" + "  ".repeat(depth));
+    }
+}
@@ -0,0 +1,35 @@
+package org.quiltmc;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * A library of a launcher profile.
+ *
+ * @param url  the Maven repository the library is downloaded from, or {@code null} for the launcher's default
+ * @param json the library object as published upstream, pretty printed, or {@code null} for libraries the generator
+ *             adds itself. It is written as is, so fields the generator has no use for are kept
+ */
+public record Library(String name, String url, String json) implements JsonContent {
+    public Library(String name, String url) {
+        this(name, url, null);
+    }
+
+    /**
+     * Writes the library. Upstream libraries are written as they were published, so they must not be nested in
+     * another document with this, only serialized on their own.
+     */
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        if (this.json != null) {
+            out.jsonValue(this.json);
+            return;
+        }
+
+        out.beginObject();
+        out.name("name").value(this.name);
+        out.name("url").value(this.url);
+        out.endObject();
+    }
+}
@@ -0,0 +1,373 @@
+package org.quiltmc;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Generates the per game version loader files, which cover every game version and loader version pair.
+ */
+public class LoaderGenerator {
+    private final String mavenUrl;
+    private final String fabricUrl;
+    private final List<GameVersion> game;
+    private final List<LoaderVersion> loader;
+    private final Map<String, MavenVersion> gameHashedMojmap;
+    private final Map<String, MavenVersion> gameIntermediaries;
+    private final Map<String, LauncherMeta> launcherMetaData;
+    private final int pageSize;
+    private final int parallelism;
+
+    /**
+     * @param pageSize    the number of loader versions in every page of {@code v3/versions/loader/<game>/page/<page>},
+     *                    and in {@code v3/versions/loader/<game>/newest}
+     * @param parallelism the number of threads used to generate files, the game versions are split between them
+     */
+    public LoaderGenerator(String mavenUrl, String fabricUrl, List<GameVersion> game, List<LoaderVersion> loader,
+                           Map<String, MavenVersion> gameHashedMojmap, Map<String, MavenVersion> gameIntermediaries,
+                           Map<String, LauncherMeta> launcherMetaData, int pageSize, int parallelism) {
+        this.mavenUrl = mavenUrl;
+        this.fabricUrl = fabricUrl;
+        this.game = game;
+        this.loader = loader;
+        this.gameHashedMojmap = gameHashedMojmap;
+        this.gameIntermediaries = gameIntermediaries;
+        this.launcherMetaData = launcherMetaData;
+        this.pageSize = pageSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Generates {@code v3/versions/loader/<game>} and {@code v3/versions/loader/<game>/<loader>}, along with
+     * {@code v3/versions/loader/<game>/latest} and {@code v3/versions/loader/<game>/stable}, which only hold the newest
+     * entry without its launcher meta.
+     *
+     * <p>Clients that do not need all of that get {@code v3/versions/loader/<game>/slim}, which only lists the loader
+     * versions next to the game's mappings, and {@code v3/versions/loader/<game>/page/<page>}, which splits the
+     * entries without their launcher meta into pages. Pages are filled from the oldest loader up, so a release only
+     * changes the last one, and {@code v3/versions/loader/<game>/newest} holds the newest page worth of entries.</p>
+     *
+     * <p>Game versions whose whole directory is up-to-date, as told by {@link FileSink#skipUnchangedTree}, are skipped,
+     * and so are the directories of single loader versions in the others.</p>
+     *
+     * @return the number of loader versions generated
+     */
+    public int generateLoaderVersions(FileSink sink) {
+        byte[][] gameFingerprints = this.gameFingerprints();
+        byte[][] loaderFingerprints = this.loaderFingerprints();
+        byte[][][] loaderTrees = this.loaderTreeFingerprints(gameFingerprints, loaderFingerprints);
+        byte[][] gameTrees = this.gameTreeFingerprints(loaderTrees);
+
+        // The launcher meta is nested one level deep in a loader version file, and two in the list of a game version
+        String[] launcherMeta = new String[this.loader.size()];
+        String[] listedLauncherMeta = new String[this.loader.size()];
+        for (int j = 0; j < this.loader.size(); j++) {
+            LauncherMeta meta = this.launcherMetaData.get(this.loader.get(j).maven());
+            launcherMeta[j] = meta == null ? null : meta.json(1);
+            listedLauncherMeta[j] = meta == null ? null : meta.json(2);
+        }
+
+        int pages = (this.loader.size() + this.pageSize - 1) / this.pageSize;
+
+        LoaderVersion latest = VersionSummary.first(this.loader, version -> true);
+        LoaderVersion stable = VersionSummary.first(this.loader, version -> VersionSummary.isStable(version.version()));
+
+        this.forEachGame(i -> {
+            GameVersion gameVersion = this.game.get(i);
+            if (sink.skipUnchangedTree("v3/versions/loader/" + gameVersion.version(), gameTrees[i])) {
+                return;
+            }
+
+            MavenVersion hashed = this.gameHashedMojmap.get(gameVersion.version());
+            MavenVersion intermediary = this.gameIntermediaries.get(gameVersion.version());
+
+            for (int j = 0; j < this.loader.size(); j++) {
+                LoaderVersion loaderVersion = this.loader.get(j);
+                String fileName = "v3/versions/loader/" + gameVersion.version() + "/" + loaderVersion.version();
+                if (sink.skipUnchangedTree(fileName, loaderTrees[i][j])) {
+                    continue;
+                }
+
+                if (!sink.skipUnchanged(fileName, Fingerprint.combine("loader", gameFingerprints[i], loaderFingerprints[j]))) {
+                    String meta = launcherMeta[j];
+                    sink.acceptJson(fileName, out -> writeLoaderVersion(out, loaderVersion, hashed, intermediary, meta));
+                }
+            }
+
+            // Streamed after the single files, as they share the buffer of this thread
+            sink.acceptJson("v3/versions/loader/" + gameVersion.version(), out -> {
+                out.beginArray();
+                for (int j = 0; j < this.loader.size(); j++) {
+                    writeLoaderVersion(out, this.loader.get(j), hashed, intermediary, listedLauncherMeta[j]);
+                }
+                out.endArray();
+            });
+
+            if (latest != null) {
+                sink.acceptJson("v3/versions/loader/" + gameVersion.version() + "/latest", out -> writeLoaderSummary(out, latest, hashed, intermediary));
+            }
+
+            if (stable != null) {
+                sink.acceptJson("v3/versions/loader/" + gameVersion.version() + "/stable", out -> writeLoaderSummary(out, stable, hashed, intermediary));
+            }
+
+            sink.acceptJson("v3/versions/loader/" + gameVersion.version() + "/slim", out -> {
+                out.beginObject();
+                out.name("hashed");
+                JsonContent.writeNullable(out, hashed);
+                out.name("intermediary");
+                JsonContent.writeNullable(out, intermediary);
+                out.name("loader");
+                JsonContent.array(this.loader).write(out);
+                out.endObject();
+            });
+
+            // The loaders are listed newest first, so page 1 ends with the last of them
+            for (int page = 1; page <= pages; page++) {
+                int from = this.loader.size() - 1 - (page - 1) * this.pageSize;
+                int to = Math.max(from - this.pageSize, -1);
+                String fileName = "v3/versions/loader/" + gameVersion.version() + "/page/" + page;
+
+                byte[][] parts = new byte[from - to + 1][];
+                parts[0] = gameFingerprints[i];
+                for (int j = from; j > to; j--) {
+                    parts[from - j + 1] = loaderFingerprints[j];
+                }
+
+                if (!sink.skipUnchanged(fileName, Fingerprint.combine("page", parts))) {
+                    int number = page;
+                    sink.acceptJson(fileName, out -> {
+                        out.beginObject();
+                        out.name("page").value(number);
+                        out.name("versions");
+                        out.beginArray();
+                        for (int j = from; j > to; j--) {
+                            writeLoaderSummary(out, this.loader.get(j), hashed, intermediary);
+                        }
+                        out.endArray();
+                        out.endObject();
+                    });
+                }
+            }
+
+            sink.acceptJson("v3/versions/loader/" + gameVersion.version() + "/newest", out -> {
+                out.beginObject();
+                out.name("pages").value(pages);
+                out.name("versions");
+                out.beginArray();
+                for (int j = 0; j < Math.min(this.pageSize, this.loader.size()); j++) {
+                    writeLoaderSummary(out, this.loader.get(j), hashed, intermediary);
+                }
+                out.endArray();
+                out.endObject();
+            });
+        });
+
+        return this.game.size() * this.loader.size();
+    }
+
+    private static void writeLoaderSummary(JsonWriter out, LoaderVersion loader, MavenVersion hashed, MavenVersion intermediary) throws IOException {
+        out.beginObject();
+        out.name("loader");
+        loader.write(out);
+        out.name("hashed");
+        JsonContent.writeNullable(out, hashed);
+        out.name("intermediary");
+        JsonContent.writeNullable(out, intermediary);
+        out.endObject();
+    }
+
+    /**
+     * @param launcherMeta the launcher meta, already indented for where it is nested
+     */
+    private static void writeLoaderVersion(JsonWriter out, LoaderVersion loader, MavenVersion hashed,
+                                           MavenVersion intermediary, String launcherMeta) throws IOException {
+        out.beginObject();
+        out.name("loader");
+        loader.write(out);
+        out.name("hashed");
+        JsonContent.writeNullable(out, hashed);
+        out.name("intermediary");
+        JsonContent.writeNullable(out, intermediary);
+        out.name("launcherMeta");
+        if (launcherMeta == null) {
+            out.nullValue();
+        } else {
+            out.jsonValue(launcherMeta);
+        }
+        out.endObject();
+    }
+
+    /**
+     * Generates the client and server launcher profiles for every pair.
+     *
+     * @param currentTime the timestamp written to the non-deterministic {@code releaseTime} and {@code time} fields
+     * @return the number of loader profiles generated
+     */
+    public int generateProfiles(FileSink sink, String currentTime) {
+        ProfileTemplate template = new ProfileTemplate(this.mavenUrl, this.fabricUrl);
+        byte[] timeEnd = template.timeEnd(currentTime);
+        byte[][] gameFingerprints = this.gameFingerprints();
+        byte[][] loaderFingerprints = this.loaderFingerprints();
+        byte[][][] loaderTrees = this.loaderTreeFingerprints(gameFingerprints, loaderFingerprints);
+        byte[][] gameTrees = this.gameTreeFingerprints(loaderTrees);
+
+        List<ProfileTemplate.GameFragment> games = new ArrayList<>(this.game.size());
+
+        for (GameVersion gameVersion : this.game) {
+            games.add(template.game(gameVersion.version(), this.gameHashedMojmap.get(gameVersion.version()),
+                    this.gameIntermediaries.get(gameVersion.version())));
+        }
+
+        for (Side side : Side.values()) {
+            List<ProfileTemplate.LoaderFragment> loaders = new ArrayList<>(this.loader.size());
+
+            for (LoaderVersion loader : this.loader) {
+                loaders.add(template.loader(loader, this.launcherMetaData.get(loader.maven()), side.side));
+            }
+
+            this.forEachGame(i -> {
+                if (sink.skipUnchangedTree("v3/versions/loader/" + this.game.get(i).version(), gameTrees[i])) {
+                    return;
+                }
+
+                for (int j = 0; j < loaders.size(); j++) {
+                    if (sink.skipUnchangedTree("v3/versions/loader/" + this.game.get(i).version() + "/" + this.loader.get(j).version(), loaderTrees[i][j])) {
+                        continue;
+                    }
+
+                    String fileName = "v3/versions/loader/" + this.game.get(i).version() + "/" + this.loader.get(j).version() + "/" + side.type + "/json";
+                    if (sink.skipUnchanged(fileName, Fingerprint.combine(side.type, gameFingerprints[i], loaderFingerprints[j]))) {
+                        continue;
+                    }
+
+                    HashingBuffer out = HashingBuffer.get();
+                    template.writeDeterministic(out, games.get(i), loaders.get(j));
+
+                    // The snapshot hash leaves out the non-deterministic fields, which are then appended to the payload
+                    byte[] hash = ProfileTemplate.snapshotHash(out);
+                    out.write(timeEnd);
+
+                    sink.accept(fileName, "application/json", hash, out);
+                }
+            });
+        }
+
+        return this.game.size() * this.loader.size();
+    }
+
+    /**
+     * Runs the action for the index of every game version, spread over the generator threads.
+     *
+     * <p>Every game version writes its own set of files, so the generated output does not depend on the scheduling.</p>
+     */
+    private void forEachGame(IntConsumer action) {
+        if (this.parallelism <= 1) {
+            for (int i = 0; i < this.game.size(); i++) {
+                action.accept(i);
+            }
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            pool.submit(() -> IntStream.range(0, this.game.size()).parallel().forEach(action)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while generating loader files");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to generate loader files", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Fingerprints the inputs each game version contributes: its version and its hashed and intermediary entries.
+     */
+    private byte[][] gameFingerprints() {
+        byte[][] fingerprints = new byte[this.game.size()][];
+
+        for (int i = 0; i < this.game.size(); i++) {
+            String gameVersion = this.game.get(i).version();
+            fingerprints[i] = Fingerprint.of(gameVersion, this.mavenUrl, this.fabricUrl,
+                    String.valueOf(this.gameHashedMojmap.get(gameVersion)), String.valueOf(this.gameIntermediaries.get(gameVersion)));
+        }
+
+        return fingerprints;
+    }
+
+    /**
+     * Fingerprints the inputs each loader version contributes: its entry, which includes the maven ID, and its launcher meta.
+     */
+    private byte[][] loaderFingerprints() {
+        byte[][] fingerprints = new byte[this.loader.size()][];
+
+        for (int j = 0; j < this.loader.size(); j++) {
+            LoaderVersion loader = this.loader.get(j);
+            LauncherMeta meta = this.launcherMetaData.get(loader.maven());
+            fingerprints[j] = Fingerprint.of(loader.toString(), meta == null ? "null" : meta.json());
+        }
+
+        return fingerprints;
+    }
+
+    /**
+     * Fingerprints the directory of every game and loader version pair, which holds the loader version file and its
+     * profiles, from the game version's and the loader version's inputs.
+     *
+     * <p>These are the leaves of a two level Merkle tree over the loader directories.</p>
+     *
+     * @return the fingerprints by game version index, then by loader version index
+     */
+    private byte[][][] loaderTreeFingerprints(byte[][] gameFingerprints, byte[][] loaderFingerprints) {
+        byte[][][] fingerprints = new byte[this.game.size()][this.loader.size()][];
+
+        for (int i = 0; i < this.game.size(); i++) {
+            for (int j = 0; j < this.loader.size(); j++) {
+                fingerprints[i][j] = Fingerprint.combine("tree", gameFingerprints[i], loaderFingerprints[j]);
+            }
+        }
+
+        return fingerprints;
+    }
+
+    /**
+     * Fingerprints the directory of every game version from those of its loader directories, and the page size.
+     *
+     * <p>The lists, pages and summaries of a game version cover every loader version, so a loader release changes
+     * every game directory. Below them, the directories of the loader versions that did not change are then still
+     * carried over, with a comparison each.</p>
+     */
+    private byte[][] gameTreeFingerprints(byte[][][] loaderTrees) {
+        byte[][] fingerprints = new byte[this.game.size()][];
+
+        for (int i = 0; i < this.game.size(); i++) {
+            byte[][] parts = new byte[this.loader.size() + 1][];
+            parts[0] = Fingerprint.of(String.valueOf(this.pageSize));
+            System.arraycopy(loaderTrees[i], 0, parts, 1, this.loader.size());
+            fingerprints[i] = Fingerprint.combine("tree", parts);
+        }
+
+        return fingerprints;
+    }
+
+    private enum Side {
+        CLIENT("client", "profile"), SERVER("server", "server");
+
+        final String side;
+        final String type;
+
+        Side(String side, String type) {
+            this.side = side;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.quiltmc;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * A loader release, as listed in {@code v3/versions/loader}.
+ *
+ * @param version the version without its build metadata
+ */
+public record LoaderVersion(String separator, int build, String maven, String version) implements JsonContent {
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("separator").value(this.separator);
+        out.name("build").value(this.build);
+        out.name("maven").value(this.maven);
+        out.name("version").value(this.version);
+        out.endObject();
+    }
+}
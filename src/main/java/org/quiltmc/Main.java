@@ -1,61 +1,126 @@
 package org.quiltmc;
-import com.backblaze.b2.client.B2StorageClient;
-import com.backblaze.b2.client.B2StorageClientFactory;
-import com.backblaze.b2.client.contentHandlers.B2ContentMemoryWriter;
-import com.backblaze.b2.client.contentSources.B2ByteArrayContentSource;
-import com.backblaze.b2.client.contentSources.B2ContentSource;
-import com.backblaze.b2.client.exceptions.B2Exception;
-import com.backblaze.b2.client.structures.B2FileVersion;
-import com.backblaze.b2.client.structures.B2UploadFileRequest;
 import com.google.gson.*;
 
 import java.io.*;
 import java.lang.reflect.Array;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.Path;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Main generator class for the meta.
  */
 public class Main {
     private static final DateFormat ISO_8601 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
+    private static final Set<String> INTERNAL_FILES = Set.of(Constants.MANIFEST_FILE, Constants.FINGERPRINTS_FILE,
+            Constants.LEGACY_MANIFEST_FILE, Constants.LEGACY_FINGERPRINTS_FILE, Constants.JOURNAL_FILE);
+    // Upstream fingerprints are kept in the fingerprints manifest under keys that cannot clash with a file path
+    private static final String UPSTREAM_PREFIX = "upstream:";
 
     private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
-    private B2StorageClient client;
-    private String bucketId;
-    private final MavenRepository maven = new MavenRepository(Constants.BASE_MAVEN_URL);
-    private final MavenRepository fabric = new MavenRepository(Constants.FABRIC_MAVEN_URL);
-    private final Map<String, JsonArray> arrays = new ConcurrentHashMap<>();
-    private final Map<String, JsonElement> launcherMetaData = new ConcurrentHashMap<>();
-    private final Map<String, JsonObject> gameIntermediaries = new ConcurrentHashMap<>();
-    private final Map<String, JsonObject> gameHashedMojmap = new ConcurrentHashMap<>();
+    private final Storage storage;
+    private final Shard shard;
+    private final Metrics metrics = new Metrics("probe", "list", "fetch", "generate", "upload", "purge", "delete", "manifest");
+    private final Metrics.Stage generateStage = this.metrics.stage("generate");
+    private final HttpFetcher fetcher = new HttpFetcher(new HostLimiter(Constants.HOST_PERMITS, Constants.DEFAULT_HOST_PERMITS), Constants.HTTP_CONNECT_TIMEOUT, Constants.HTTP_REQUEST_TIMEOUT, Constants.HTTP_MAX_ATTEMPTS);
+    private final HttpCache http = new HttpCache(this.fetcher, isBlank(Constants.HTTP_CACHE) ? null : Path.of(Constants.HTTP_CACHE), Constants.HTTP_CACHE_MAX_SIZE);
+    private final Upstream source;
+    private final UpstreamProbe upstream;
+    private final MavenRepository maven;
+    private final MavenRepository fabric;
+    private volatile List<GameVersion> game;
+    private volatile List<MappingsVersion> mappings;
+    private volatile List<MavenVersion> hashed;
+    private volatile List<LoaderVersion> loader;
+    private volatile List<InstallerVersion> installer;
+    private final Map<String, LauncherMeta> launcherMetaData = new ConcurrentHashMap<>();
+    private final Map<String, MavenVersion> gameIntermediaries = new ConcurrentHashMap<>();
+    private final Map<String, MavenVersion> gameHashedMojmap = new ConcurrentHashMap<>();
     private final Deque<MavenRepository.ArtifactMetadata.Artifact> loaderVersions = new ConcurrentLinkedDeque<>();
-    private final Map<String, FileUpload> files = new ConcurrentHashMap<>();
-    private final Map<String, String> previousHashes = new ConcurrentHashMap<>();
-    private final Map<String, String> newHashes = new ConcurrentHashMap<>();
-    private final Set<String> seenFiles = new ConcurrentSkipListSet<>();
-    private Integer skippedFiles = 0;
+    private UploadPipeline pipeline;
+    private UploadJournal journal = UploadJournal.inMemory();
+    private final Map<String, StoredFile> storedFiles = new HashMap<>();
+    private Manifest previousHashes = Manifest.EMPTY;
+    private boolean recoveredHashes;
+    private final Map<String, byte[]> newHashes = new ConcurrentHashMap<>();
+    private Manifest previousFingerprints = Manifest.EMPTY;
+    private final Map<String, byte[]> newFingerprints = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> upstreamFingerprints = new HashMap<>();
+    // Keyed by directory with a trailing slash, so they never collide with a file
+    private final Map<String, byte[]> treeFingerprints = new ConcurrentHashMap<>();
+    private final Set<String> carriedTrees = ConcurrentHashMap.newKeySet();
+    private final FileSink sink = new FileSink() {
+        @Override
+        public void accept(String fileName, String contentType, byte[] hash, HashingBuffer contents) {
+            Main.this.upload(fileName, contentType, hash, contents);
+        }
+
+        @Override
+        public boolean skipUnchanged(String fileName, byte[] fingerprint) {
+            return Main.this.skipUnchanged(fileName, fingerprint);
+        }
+
+        @Override
+        public boolean skipUnchangedTree(String directory, byte[] fingerprint) {
+            return Main.this.skipUnchangedTree(directory, fingerprint);
+        }
+    };
+    private final LongAdder skippedFiles = new LongAdder();
+    private final PayloadInterner payloads = new PayloadInterner(Constants.PAYLOAD_CACHE_ENTRIES);
+
+    public Main(Storage storage, String snapshot) throws IOException {
+        this(storage, snapshot, Shard.ALL);
+    }
+
+    /**
+     * @param shard the part of the meta this run generates and uploads, see {@link #merge(int)}
+     */
+    public Main(Storage storage, String snapshot, Shard shard) throws IOException {
+        this.storage = storage;
+        this.shard = shard;
+        this.source = this.createUpstream(snapshot);
+        this.upstream = new UpstreamProbe(new MeteredUpstream(this.source, this.metrics.stage("fetch")));
+        this.maven = new MavenRepository(Constants.BASE_MAVEN_URL, this.upstream);
+        this.fabric = new MavenRepository(Constants.FABRIC_MAVEN_URL, this.upstream);
+    }
 
     public static void main(String[] args) {
         System.out.println("[INFO] Running build " + Constants.TOOL_VERSION);
 
-        if (Constants.B2_APP_KEY_ID.isEmpty() || Constants.B2_APP_KEY.isEmpty() || Constants.CF_KEY.isEmpty()) {
-            System.err.println("[ERROR] B2_APP_KEY_ID, B2_APP_KEY and CF_KEY must be set in the environment. Please refer to the documentation.");
+        Shard shard = Shard.ALL;
+        int merge = 0;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--shard") && i + 1 < args.length) {
+                    shard = Shard.parse(args[++i]);
+                } else if (args[i].equals("--merge") && i + 1 < args.length) {
+                    merge = Integer.parseInt(args[++i]);
+                } else {
+                    throw new IllegalArgumentException("Unknown argument " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("[ERROR] " + e.getMessage() + ". Usage: [--shard <index>/<count> | --merge <count>]");
             System.exit(1);
+            return;
         }
 
-        boolean success = new Main().build();
+        Main main;
+        try {
+            main = new Main(createStorage(Constants.STORAGE), Constants.UPSTREAM_SNAPSHOT, shard);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.err.println("[ERROR] Failed to set up the " + Constants.STORAGE + " storage or the upstream snapshot");
+            System.exit(1);
+            return;
+        }
+
+        boolean success = merge > 0 ? main.merge(merge) : main.build();
 
         if (!success) {
             System.out.println("[ERROR] Failed to build meta. Please refer to the logs and report this to the Infrastructure team.");
@@ -64,51 +129,111 @@ public class Main {
         System.exit(0);
     }
 
-    public boolean build() {
-        this.client = B2StorageClientFactory
-            .createDefaultFactory()
-            .create(Constants.B2_APP_KEY_ID, Constants.B2_APP_KEY, Constants.USER_AGENT);
-        try {
-            this.bucketId = this.client.getBucketOrNullByName(Constants.B2_BUCKET).getBucketId();
-            if (this.bucketId == null) {
-                throw new IOException("Failed to find bucket");
+    private static Storage createStorage(String type) throws IOException {
+        if (type.equals("memory")) {
+            return new MemoryStorage();
+        } else if (type.startsWith("file:")) {
+            return new FileSystemStorage(Path.of(type.substring("file:".length())));
+        } else if (type.equals("b2")) {
+            if (isBlank(Constants.B2_APP_KEY_ID) || isBlank(Constants.B2_APP_KEY) || isBlank(Constants.CF_KEY)) {
+                throw new IOException("B2_APP_KEY_ID, B2_APP_KEY and CF_KEY must be set in the environment. Please refer to the documentation.");
             }
-        } catch (B2Exception | IOException e) {
-            e.printStackTrace();
-            System.err.println("[ERROR] Failed to get bucket ID for bucket " + Constants.B2_BUCKET);
-            return false;
+
+            return B2Storage.create(Constants.B2_APP_KEY_ID, Constants.B2_APP_KEY, Constants.B2_BUCKET);
+        }
+
+        throw new IOException("Unknown storage " + type + ", expected b2, memory or file:<directory>");
+    }
+
+    private Upstream createUpstream(String snapshot) throws IOException {
+        if (isBlank(snapshot)) {
+            return this.http;
+        } else if (snapshot.startsWith("record:")) {
+            return UpstreamSnapshot.record(this.http, Path.of(snapshot.substring("record:".length())));
+        } else if (snapshot.startsWith("replay:")) {
+            return UpstreamSnapshot.replay(Path.of(snapshot.substring("replay:".length())));
         }
 
+        throw new IOException("Unknown upstream snapshot mode " + snapshot + ", expected record:<file> or replay:<file>");
+    }
+
+    public boolean build() {
         try {
+            this.metrics.stage("probe").start();
+            boolean unchanged = this.probeUpstream();
+            this.metrics.stage("probe").stop();
+
+            if (unchanged && this.source instanceof UpstreamSnapshot snapshot && snapshot.isRecording()) {
+                // A recording has to hold every response of a whole run to be replayable
+                System.out.println("[INFO] Nothing changed upstream since the last run, running in full to record it");
+            } else if (unchanged) {
+                System.out.println("[INFO] Nothing changed upstream since the last run, skipping generation");
+                return true;
+            }
+
+            this.metrics.stage("list").start();
+            this.listStoredFiles();
             this.populatePreviousHashes();
+            this.loadJournal();
+            this.metrics.stage("list").stop();
+
+            // Changed files are uploaded and purged while the rest of the meta is still being generated
+            if (this.shard.isPartial()) {
+                // Shards cannot tell whether a loader directory changed as a whole, so the merge purges the files that changed
+                System.out.println("[INFO] Running shard " + this.shard + ", the merge purges the changed files");
+                this.pipeline = this.createPipeline(CachePurger.NONE);
+            } else {
+                this.pipeline = this.createPipeline(this.createPurger());
+            }
 
             System.out.println("[INFO] Gathering data..");
 
-            ExecutorService executor = Executors.newCachedThreadPool();
+            this.metrics.stage("fetch").start();
+            ExecutorService executor = FetchScheduler.create(Constants.FETCH_THREADS);
 
-            CompletableFuture.allOf(
-                    this.populateHashedMojmapAndGame(executor),
-                    this.populateIntermediaryAndGame(executor),
-                    CompletableFuture.runAsync(this::populateQuiltMappings, executor),
-                    CompletableFuture.runAsync(this::populateInstaller, executor),
-                    CompletableFuture.runAsync(this.populateLoader(executor), executor)
-            ).join();
+            try {
+                CompletableFuture.allOf(
+                        this.populateHashedMojmapAndGame(executor),
+                        this.populateIntermediaryAndGame(executor),
+                        CompletableFuture.runAsync(this::populateQuiltMappings, executor),
+                        CompletableFuture.runAsync(this::populateInstaller, executor),
+                        this.populateLoader(executor)
+                ).join();
+            } finally {
+                // A failed fetch must not leave the threads behind
+                executor.shutdown();
+            }
+            this.metrics.stage("fetch").stop();
+
+            System.out.println("[INFO] Fetched upstream files (" + this.upstream.getStats() + ")");
+            this.http.evict();
+
+            if (this.source instanceof UpstreamSnapshot snapshot && snapshot.isRecording()) {
+                snapshot.save();
+            }
 
             System.out.println("[INFO] Gathering loader data..");
 
+            this.generateStage.start();
             this.populateLoaderVersions();
             this.populateProfiles();
-
-            JsonObject versions = new JsonObject();
-
-            versions.add("game", this.arrays.get("game"));
-            versions.add("mappings", this.arrays.get("mappings"));
-            versions.add("hashed", this.arrays.get("hashed"));
-            versions.add("loader", this.arrays.get("loader"));
-            versions.add("installer", this.arrays.get("installer"));
-
-            upload("v3/versions", this.gson.toJson(versions));
-            upload("v3/versions/game", this.gson.toJson(this.arrays.get("game")));
+            this.generateStage.stop();
+
+            upload("v3/versions", out -> {
+                out.beginObject();
+                out.name("game");
+                JsonContent.array(this.game).write(out);
+                out.name("mappings");
+                JsonContent.array(this.mappings).write(out);
+                out.name("hashed");
+                JsonContent.array(this.hashed).write(out);
+                out.name("loader");
+                JsonContent.array(this.loader).write(out);
+                out.name("installer");
+                JsonContent.array(this.installer).write(out);
+                out.endObject();
+            });
+            upload("v3/versions/game", JsonContent.array(this.game));
 
             // Add static files
             ClassLoader classLoader = getClass().getClassLoader();
@@ -119,50 +244,219 @@ public class Main {
             upload("swagger.css", classLoader.getResourceAsStream("static/swagger.css").readAllBytes(), "text/css");
             upload("swagger-ui-bundle.js", classLoader.getResourceAsStream("static/swagger-ui-bundle.js").readAllBytes(), "text/javascript");
 
-            System.out.println("[INFO] Syncing files..");
-            this.doUpload();
-
-            System.out.println("[INFO] Purging cache..");
-            this.purgeCache();
-
-            System.out.println("[INFO] Updating manifest..");
-            this.updateManifest();
+            System.out.println("[INFO] Waiting for uploads and cache purges..");
+            this.pipeline.finish(this.newHashes.keySet());
+            System.out.println("[INFO] Uploaded " + this.pipeline.getUploaded().size() + " file(s) (skipped " + this.skippedFiles.sum()
+                    + ", " + this.payloads.getHits() + " with a shared payload)");
+
+            if (this.shard.isPartial()) {
+                // Deleting needs every shard's files, so it is left to the merge along with the manifests
+                System.out.println("[INFO] Writing the manifests of shard " + this.shard + "..");
+                this.metrics.stage("manifest").start();
+                this.writePartialManifests();
+                this.metrics.stage("manifest").stop();
+                // Kept until the merge, in case the shard has to run again
+                this.journal.checkpoint();
+            } else {
+                System.out.println("[INFO] Deleting old files..");
+                this.deleteOldFiles();
+
+                System.out.println("[INFO] Updating manifest..");
+                this.metrics.stage("manifest").start();
+                this.updateManifest();
+                this.metrics.stage("manifest").stop();
+                this.journal.clear();
+            }
 
             System.out.println("[INFO] Content synced");
 
             // Print a changed file collapsible (for GitHub Actions)
-            System.out.println("::group::Changed file(s) (" + this.files.size() + ")");
-            System.out.println(this.files.keySet().stream().sorted().collect(Collectors.joining("\n")));
+            System.out.println("::group::Changed file(s) (" + this.pipeline.getUploaded().size() + ")");
+            System.out.println(String.join("\n", this.pipeline.getUploaded()));
             System.out.println("::endgroup::");
 
             return true;
         } catch (Exception e) {
             e.printStackTrace();
+            this.checkpointJournal();
+            return false;
+        } finally {
+            this.exportMetrics();
+        }
+    }
+
+    /**
+     * Combines the runs of {@code shards} shards: deletes the files none of them generated, purges the changed files
+     * from the cache and writes the manifests for the next run.
+     */
+    public boolean merge(int shards) {
+        try {
+            this.metrics.stage("list").start();
+            this.listStoredFiles();
+            this.populatePreviousHashes();
+            this.loadJournal();
+            this.metrics.stage("list").stop();
+
+            System.out.println("[INFO] Merging " + shards + " shard(s)..");
+            List<Shard> missing = new ArrayList<>();
+            Map<String, byte[]> shardUpstream = null;
+            boolean upstreamConsistent = true;
+
+            for (int i = 1; i <= shards; i++) {
+                Shard shard = new Shard(i, shards);
+                Manifest hashes = this.readPartialManifest(shard.partOf(Constants.MANIFEST_FILE));
+                Manifest fingerprints = this.readPartialManifest(shard.partOf(Constants.FINGERPRINTS_FILE));
+
+                if (hashes == null || fingerprints == null) {
+                    missing.add(shard);
+                    continue;
+                }
+
+                for (String path : hashes.paths()) {
+                    this.newHashes.put(path, hashes.get(path));
+                }
+
+                Map<String, byte[]> upstream = new HashMap<>();
+                for (String path : fingerprints.paths()) {
+                    (path.startsWith(UPSTREAM_PREFIX) ? upstream : path.endsWith("/") ? this.treeFingerprints : this.newFingerprints)
+                            .put(path, fingerprints.get(path));
+                }
+
+                if (shardUpstream == null) {
+                    shardUpstream = upstream;
+                } else if (!Arrays.equals(Manifest.of(shardUpstream).write(), Manifest.of(upstream).write())) {
+                    upstreamConsistent = false;
+                }
+            }
+
+            if (missing.size() == shards) {
+                // Shards write nothing when upstream did not change, which the merge can tell the same way
+                if (this.probeUpstream()) {
+                    System.out.println("[INFO] Nothing changed upstream since the last run, nothing to merge");
+                    return true;
+                }
+
+                throw new RuntimeException("Found no shard manifests, did the shards run?");
+            } else if (!missing.isEmpty()) {
+                throw new RuntimeException("Missing the manifests of shard(s) " + missing + ", did they fail?");
+            }
+
+            if (upstreamConsistent) {
+                this.upstreamFingerprints.putAll(shardUpstream);
+            } else {
+                // Leaving the upstream fingerprints out makes the next run start over
+                System.out.println("[WARN] Upstream changed while the shards were running, the next run regenerates everything");
+            }
+
+            this.pipeline = this.createPipeline(this.createPurger());
+            for (Map.Entry<String, byte[]> entry : this.newHashes.entrySet()) {
+                if (!this.previousHashes.matches(entry.getKey(), entry.getValue()) && !this.journal.isPurged(entry.getKey())) {
+                    this.pipeline.purge(entry.getKey());
+                }
+            }
+            this.pipeline.finish(this.newHashes.keySet());
+
+            System.out.println("[INFO] Deleting old files..");
+            this.deleteOldFiles();
+
+            System.out.println("[INFO] Updating manifest..");
+            this.metrics.stage("manifest").start();
+            this.updateManifest();
+            this.metrics.stage("manifest").stop();
+            this.journal.clear();
+
+            // Only once the manifest is written, so a failed merge can be retried
+            for (int i = 1; i <= shards; i++) {
+                Shard shard = new Shard(i, shards);
+                this.storage.delete(shard.partOf(Constants.MANIFEST_FILE));
+                this.storage.delete(shard.partOf(Constants.FINGERPRINTS_FILE));
+                this.storage.delete(shard.partOf(Constants.JOURNAL_FILE));
+            }
+
+            System.out.println("[INFO] Merged " + this.newHashes.size() + " file(s) from " + shards + " shard(s)");
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            this.checkpointJournal();
             return false;
+        } finally {
+            this.exportMetrics();
+        }
+    }
+
+    /**
+     * Loads the journal a failed run of this shard left behind, so the work it completed is not done again.
+     */
+    private void loadJournal() {
+        String fileName = this.shard.isPartial() ? this.shard.partOf(Constants.JOURNAL_FILE) : Constants.JOURNAL_FILE;
+
+        try {
+            this.journal = UploadJournal.load(this.storage, fileName, Constants.JOURNAL_CHECKPOINT_INTERVAL_MILLIS);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("[WARN] " + fileName + " is corrupt, ignoring it");
+            this.journal = new UploadJournal(this.storage, fileName, Constants.JOURNAL_CHECKPOINT_INTERVAL_MILLIS);
+        }
+
+        if (!this.journal.isEmpty()) {
+            System.out.println("[INFO] Resuming a failed run, which completed " + this.journal.getStats());
+        }
+    }
+
+    private void checkpointJournal() {
+        try {
+            this.journal.checkpoint();
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("[WARN] Failed to save the upload journal, the next run starts over");
+        }
+    }
+
+    private CachePurger createPurger() {
+        if (isBlank(Constants.CF_KEY)) {
+            System.out.println("[WARN] CF_KEY is not set, skipping cache purge");
+            return CachePurger.NONE;
+        }
+
+        return new CloudflarePurger(this.fetcher, Constants.CF_PURGE_FILES_ENDPOINT, Constants.CF_KEY,
+                new TokenBucket(Constants.CF_PURGE_LIMIT_PER_MINUTE, Duration.ofMinutes(1)), Constants.CF_PURGE_CONCURRENCY, this.metrics.stage("purge"));
+    }
+
+    private UploadPipeline createPipeline(CachePurger purger) {
+        return new UploadPipeline(this.storage, purger, this.journal, new AdaptiveLimiter(Constants.INITIAL_UPLOAD_CONCURRENCY,
+                Constants.MIN_UPLOAD_CONCURRENCY, Constants.MAX_UPLOAD_CONCURRENCY), Constants.MAX_UPLOADS_IN_FLIGHT, this.metrics);
+    }
+
+    private void exportMetrics() {
+        System.out.println("::group::Metrics");
+        System.out.print(this.metrics.toMarkdown());
+        System.out.println("::endgroup::");
+
+        try {
+            this.metrics.export(isBlank(Constants.METRICS_DIR) ? null : Path.of(Constants.METRICS_DIR),
+                    isBlank(Constants.GITHUB_STEP_SUMMARY) ? null : Path.of(Constants.GITHUB_STEP_SUMMARY));
+        } catch (IOException e) {
+            // Metrics are not worth failing a run over
+            e.printStackTrace();
+            System.out.println("[WARN] Failed to export metrics");
         }
     }
 
     private void populateQuiltMappings() {
         Collection<String> gameVersions = new LinkedHashSet<>();
-        JsonArray qm = new JsonArray();
-        Map<String, JsonArray> qmVersions = new HashMap<>();
+        List<MappingsVersion> qm = new ArrayList<>();
+        Map<String, List<MappingsVersion>> qmVersions = new HashMap<>();
 
         try {
             for (MavenRepository.ArtifactMetadata.Artifact artifact : this.maven.getMetadata(Constants.GROUP, "quilt-mappings")) {
-                JsonObject object = new JsonObject();
-
                 String gameVersion = stripInfo(artifact.version);
-                object.addProperty("gameVersion", gameVersion);
-                object.addProperty("separator", artifact.version.contains("+build.") ? "+build." : ".");
-                object.addProperty("build", Integer.parseInt(artifact.version.substring(artifact.version.lastIndexOf(".") + 1)));
-                object.addProperty("maven", artifact.mavenId());
-                object.addProperty("version", artifact.version);
-
-                object.addProperty("hashed", gameVersion);
+                MappingsVersion mappings = new MappingsVersion(gameVersion, artifact.version.contains("+build.") ? "+build." : ".",
+                        Integer.parseInt(artifact.version.substring(artifact.version.lastIndexOf(".") + 1)), artifact.mavenId(),
+                        artifact.version, gameVersion);
 
-                qm.add(object);
+                qm.add(mappings);
                 gameVersions.add(gameVersion);
-                qmVersions.computeIfAbsent(gameVersion, v -> new JsonArray()).add(object);
+                qmVersions.computeIfAbsent(gameVersion, v -> new ArrayList<>()).add(mappings);
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -171,30 +465,21 @@ public class Main {
 
         System.out.println("[INFO] Found " + qm.size() + " quilt mappings");
 
-        JsonArray array = new JsonArray();
-        gameVersions.forEach(array::add);
+        this.mappings = qm;
+        this.upload("v3/versions/game/quilt-mappings", JsonContent.strings(gameVersions));
+        this.upload("v3/versions/quilt-mappings", JsonContent.array(qm));
 
-        this.arrays.put("mappings", qm);
-        this.upload("v3/versions/game/quilt-mappings", this.gson.toJson(array));
-        this.upload("v3/versions/quilt-mappings", this.gson.toJson(qm));
-
-        for (Map.Entry<String, JsonArray> entry : qmVersions.entrySet()) {
-            this.upload("v3/versions/quilt-mappings/" + entry.getKey(), this.gson.toJson(entry.getValue()));
+        for (Map.Entry<String, List<MappingsVersion>> entry : qmVersions.entrySet()) {
+            this.upload("v3/versions/quilt-mappings/" + entry.getKey(), JsonContent.array(entry.getValue()));
         }
     }
 
     private void populateInstaller() {
-        JsonArray installer = new JsonArray();
+        List<InstallerVersion> installer = new ArrayList<>();
 
         try {
             for (MavenRepository.ArtifactMetadata.Artifact artifact : this.maven.getMetadata(Constants.GROUP, Constants.INSTALLER_ARTIFACT)) {
-                JsonObject object = new JsonObject();
-
-                object.addProperty("url", artifact.url());
-                object.addProperty("maven", artifact.mavenId());
-                object.addProperty("version", artifact.version);
-
-                installer.add(object);
+                installer.add(new InstallerVersion(artifact.url(), artifact.mavenId(), artifact.version));
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -203,14 +488,13 @@ public class Main {
 
         System.out.println("[INFO] Found " + installer.size() + " installers");
 
-        this.arrays.put("installer", installer);
-        this.upload("v3/versions/installer", this.gson.toJson(installer));
+        this.installer = installer;
+        this.upload("v3/versions/installer", JsonContent.array(installer));
     }
 
-    private Runnable populateLoader(ExecutorService executor) {
-        return () -> {
-            CompletableFuture.runAsync(this::populateLoader, executor).join();
-
+    private CompletableFuture<Void> populateLoader(Executor executor) {
+        // Chained rather than joined, so no fetch thread sits blocked waiting for the launcher meta downloads
+        return CompletableFuture.runAsync(this::populateLoader, executor).thenCompose(unused -> {
             @SuppressWarnings("unchecked")
             CompletableFuture<Void>[] futures = (CompletableFuture<Void>[]) Array.newInstance(CompletableFuture.class, this.loaderVersions.size());
             int i = 0;
@@ -220,9 +504,9 @@ public class Main {
             for (MavenRepository.ArtifactMetadata.Artifact artifact : this.loaderVersions) {
                 futures[i++] = CompletableFuture.runAsync(() -> {
                     try {
-                        URL url = new URL(artifact.url().replace(".jar", ".json"));
-                        JsonElement launcherMeta = JsonParser.parseReader(new InputStreamReader(url.openStream()));
-                        this.launcherMetaData.put(artifact.mavenId(), launcherMeta);
+                        // Released artifacts are never republished, so the cached copy is always current
+                        byte[] json = this.upstream.getImmutable(artifact.url().replace(".jar", ".json"));
+                        this.launcherMetaData.put(artifact.mavenId(), LauncherMeta.parse(new String(json, StandardCharsets.UTF_8)));
                     } catch (IOException e) {
                         e.printStackTrace();
                         throw new RuntimeException("Failed to get loader meta for " + artifact.mavenId());
@@ -230,28 +514,21 @@ public class Main {
                 }, executor);
             }
 
-            CompletableFuture.allOf(futures).join();
-        };
+            return CompletableFuture.allOf(futures);
+        });
     }
 
     private void populateLoader() {
-        JsonArray loader = new JsonArray();
+        List<LoaderVersion> loader = new ArrayList<>();
 
         try {
             for (MavenRepository.ArtifactMetadata.Artifact artifact : this.maven.getMetadata(Constants.GROUP, Constants.LOADER_ARTIFACT)) {
-                JsonObject object = new JsonObject();
-
-                object.addProperty("separator", artifact.version.contains("+build.") ? "+build." : ".");
-                object.addProperty("build", Integer.parseInt(artifact.version.substring(artifact.version.lastIndexOf(".") + 1)));
-                object.addProperty("maven", artifact.mavenId());
-
                 String version = artifact.version.contains("+build.")
                         ? artifact.version.substring(0, artifact.version.lastIndexOf('+'))
                         : artifact.version;
 
-                object.addProperty("version", version);
-
-                loader.add(object);
+                loader.add(new LoaderVersion(artifact.version.contains("+build.") ? "+build." : ".",
+                        Integer.parseInt(artifact.version.substring(artifact.version.lastIndexOf(".") + 1)), artifact.mavenId(), version));
 
                 this.loaderVersions.add(artifact);
             }
@@ -260,42 +537,35 @@ public class Main {
             throw new RuntimeException("Failed to get loader");
         }
 
-        this.arrays.put("loader", loader);
-        this.upload("v3/versions/loader", this.gson.toJson(loader));
+        this.loader = loader;
+        this.upload("v3/versions/loader", JsonContent.array(loader));
     }
 
     private CompletableFuture<Void> populateIntermediaryAndGame(Executor executor) {
         return CompletableFuture.runAsync(() -> {
             Collection<String> gameIntermediary = new LinkedHashSet<>();
-            JsonArray intermediary = new JsonArray();
-            Map<String, JsonArray> intermediaryVersions = new HashMap<>();
+            List<MavenVersion> intermediary = new ArrayList<>();
+            Map<String, List<MavenVersion>> intermediaryVersions = new HashMap<>();
 
             try {
                 MavenRepository.ArtifactMetadata intermediaries = this.fabric.getMetadata("net.fabricmc", "intermediary");
 
                 for (MavenRepository.ArtifactMetadata.Artifact artifact : intermediaries) {
-                    JsonObject object = new JsonObject();
+                    MavenVersion version = new MavenVersion(artifact.mavenId(), artifact.version);
 
-                    object.addProperty("maven", artifact.mavenId());
-                    object.addProperty("version", artifact.version);
-
-                    intermediary.add(object);
+                    intermediary.add(version);
                     gameIntermediary.add(artifact.version);
-                    this.gameIntermediaries.putIfAbsent(artifact.version, object);
-                    intermediaryVersions.computeIfAbsent(artifact.version, v -> new JsonArray()).add(object);
+                    this.gameIntermediaries.putIfAbsent(artifact.version, version);
+                    intermediaryVersions.computeIfAbsent(artifact.version, v -> new ArrayList<>()).add(version);
                 }
 
                 System.out.println("[INFO] Found " + intermediaryVersions.size() + " intermediary mappings");
 
-                JsonArray array = new JsonArray();
-                gameIntermediary.forEach(array::add);
-
-                this.arrays.put("intermediary", intermediary);
-                this.upload("v3/versions/game/intermediary", this.gson.toJson(array));
-                this.upload("v3/versions/intermediary", this.gson.toJson(intermediary));
+                this.upload("v3/versions/game/intermediary", JsonContent.strings(gameIntermediary));
+                this.upload("v3/versions/intermediary", JsonContent.array(intermediary));
 
-                for (Map.Entry<String, JsonArray> entry : intermediaryVersions.entrySet()) {
-                    this.upload("v3/versions/intermediary/" + entry.getKey(), this.gson.toJson(entry.getValue()));
+                for (Map.Entry<String, List<MavenVersion>> entry : intermediaryVersions.entrySet()) {
+                    this.upload("v3/versions/intermediary/" + entry.getKey(), JsonContent.array(entry.getValue()));
                 }
             } catch (IOException e) {
                 e.printStackTrace();
@@ -306,41 +576,35 @@ public class Main {
 
     private CompletableFuture<Void> populateHashedMojmapAndGame(Executor executor) {
         Collection<String> gameHashed = new LinkedHashSet<>();
-        JsonArray hashed = new JsonArray();
-        Map<String, JsonArray> hashedVersions = new HashMap<>();
+        List<MavenVersion> hashed = new ArrayList<>();
+        Map<String, List<MavenVersion>> hashedVersions = new HashMap<>();
 
         try {
             MavenRepository.ArtifactMetadata hashedMojmap = this.maven.getMetadata(Constants.GROUP, "hashed");
 
             CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
-                JsonArray meta = MinecraftMeta.get(hashedMojmap, gson);
-                this.arrays.put("game", meta);
-                this.upload("v3/versions/game", this.gson.toJson(meta));
+                List<GameVersion> meta = MinecraftMeta.get(hashedMojmap, gson, this.upstream);
+                this.game = meta;
+                this.upload("v3/versions/game", JsonContent.array(meta));
             }, executor);
 
             for (MavenRepository.ArtifactMetadata.Artifact artifact : hashedMojmap) {
-                JsonObject object = new JsonObject();
+                MavenVersion version = new MavenVersion(artifact.mavenId(), artifact.version);
 
-                object.addProperty("maven", artifact.mavenId());
-                object.addProperty("version", artifact.version);
-
-                hashed.add(object);
+                hashed.add(version);
                 gameHashed.add(artifact.version);
-                this.gameHashedMojmap.putIfAbsent(artifact.version, object);
-                hashedVersions.computeIfAbsent(artifact.version, v -> new JsonArray()).add(object);
+                this.gameHashedMojmap.putIfAbsent(artifact.version, version);
+                hashedVersions.computeIfAbsent(artifact.version, v -> new ArrayList<>()).add(version);
             }
 
             System.out.println("[INFO] Found " + gameHashed.size() + " game versions");
 
-            JsonArray array = new JsonArray();
-            gameHashed.forEach(array::add);
-
-            this.arrays.put("hashed", hashed);
-            this.upload("v3/versions/game/hashed", this.gson.toJson(array));
-            this.upload("v3/versions/hashed", this.gson.toJson(hashed));
+            this.hashed = hashed;
+            this.upload("v3/versions/game/hashed", JsonContent.strings(gameHashed));
+            this.upload("v3/versions/hashed", JsonContent.array(hashed));
 
-            for (Map.Entry<String, JsonArray> entry : hashedVersions.entrySet()) {
-                this.upload("v3/versions/hashed/" + entry.getKey(), this.gson.toJson(entry.getValue()));
+            for (Map.Entry<String, List<MavenVersion>> entry : hashedVersions.entrySet()) {
+                this.upload("v3/versions/hashed/" + entry.getKey(), JsonContent.array(entry.getValue()));
             }
 
             return future;
@@ -351,173 +615,163 @@ public class Main {
     }
 
     private void populateLoaderVersions() {
-        for (JsonElement gameVersionElement : this.arrays.get("game")) {
-            String gameVersion = gameVersionElement.getAsJsonObject().get("version").getAsString();
-            JsonArray gameLoaderVersion = new JsonArray();
-
-            for (JsonElement loaderVersionElement : this.arrays.get("loader")) {
-                String loaderVersion = loaderVersionElement.getAsJsonObject().get("version").getAsString();
-
-                JsonObject object = new JsonObject();
-
-                object.add("loader", loaderVersionElement);
-                object.add("hashed", this.gameHashedMojmap.get(gameVersion));
-                object.add("intermediary", this.gameIntermediaries.get(gameVersion));
-                object.add("launcherMeta", this.launcherMetaData.get(
-                        loaderVersionElement.getAsJsonObject().get("maven").getAsString()
-                ));
-
-                gameLoaderVersion.add(object);
-
-                this.upload(String.format("v3/versions/loader/%s/%s", gameVersion, loaderVersion), this.gson.toJson(object));
-            }
+        int count = this.createLoaderGenerator().generateLoaderVersions(this.sink);
 
-            this.upload(String.format("v3/versions/loader/%s", gameVersion), this.gson.toJson(gameLoaderVersion));
-        }
+        System.out.println("[INFO] Generated " + count + " loader versions");
 
-        System.out.println("[INFO] Generated " + this.arrays.get("game").size() * this.arrays.get("loader").size() + " loader versions");
+        this.upload("v3/versions/latest", VersionSummary.latest(this.game, this.loader, this.installer));
+        this.upload("v3/versions/stable", VersionSummary.stable(this.game, this.loader, this.installer));
     }
 
     private void populateProfiles() {
         String currentTime = ISO_8601.format(new Date());
+        int count = this.createLoaderGenerator().generateProfiles(this.sink, currentTime);
 
-        for (Side side : Side.values()) {
-            for (JsonElement gameVersionElement : this.arrays.get("game")) {
-                String gameVersion = gameVersionElement.getAsJsonObject().get("version").getAsString();
-
-                for (JsonElement loaderVersionElement : this.arrays.get("loader")) {
-                    String loaderVersion = loaderVersionElement.getAsJsonObject().get("version").getAsString();
-
-                    JsonObject hashed = this.gameHashedMojmap.get(gameVersion);
-                    JsonObject intermediary = this.gameIntermediaries.get(gameVersion);
-
-                    JsonObject launcherMeta = this.launcherMetaData.get(
-                            loaderVersionElement.getAsJsonObject().get("maven").getAsString()
-                    ).getAsJsonObject();
-
-                    JsonArray libraries = new JsonArray();
-
-                    libraries.addAll(launcherMeta.get("libraries").getAsJsonObject().get("common").getAsJsonArray());
-                    libraries.add(getLibrary(hashed.get("maven").getAsString(), this.maven.url));
-                    libraries.add(getLibrary(intermediary.get("maven").getAsString(), this.fabric.url));
-                    libraries.add(getLibrary(loaderVersionElement.getAsJsonObject().get("maven").getAsString(), this.maven.url));
-
-                    if (launcherMeta.get("libraries").getAsJsonObject().has(side.side)) {
-                        libraries.addAll(launcherMeta.get("libraries").getAsJsonObject().get(side.side).getAsJsonArray());
-                    }
-
-                    JsonObject arguments = new JsonObject();
-                    arguments.add("game", new JsonArray());
-
-                    JsonObject object = new JsonObject();
+        System.out.println("[INFO] Generated " + count + " loader profiles");
+    }
 
-                    object.addProperty("id", String.format("quilt-loader-%s-%s", loaderVersion, gameVersion));
-                    object.addProperty("inheritsFrom", gameVersion);
-                    object.addProperty("type", "release");
+    private LoaderGenerator createLoaderGenerator() {
+        // Only the game versions of this shard, so no time is spent on files another shard uploads
+        List<GameVersion> games = this.game.stream().filter(game -> this.shard.ownsGame(game.version())).toList();
+        return new LoaderGenerator(this.maven.url, this.fabric.url, games, this.loader,
+                this.gameHashedMojmap, this.gameIntermediaries, this.launcherMetaData, Constants.LOADER_PAGE_SIZE, Constants.GENERATOR_THREADS);
+    }
 
-                    if (launcherMeta.get("mainClass").isJsonObject()) {
-                        object.addProperty("mainClass", launcherMeta.get("mainClass").getAsJsonObject().get(side.side).getAsString());
-                    }
+    private void upload(String fileName, JsonContent json) {
+        this.sink.acceptJson(fileName, json);
+    }
 
-                    if (side == Side.SERVER && launcherMeta.has("mainClass") && launcherMeta.get("mainClass").getAsJsonObject().has("serverLauncher")) {
-                        // Add the server launch main class
-                        object.addProperty("launcherMainClass", launcherMeta.get("mainClass").getAsJsonObject().get("serverLauncher").getAsString());
-                    }
+    private void upload(String fileName, byte[] fileContents, String contentType) {
+        HashingBuffer buffer = HashingBuffer.get();
+        buffer.write(fileContents);
+        this.upload(fileName, contentType, buffer.hash(), buffer);
+    }
 
-                    object.add("arguments", arguments);
-                    object.add("libraries", libraries);
+    private void upload(String fileName, String contentType, byte[] hash, HashingBuffer contents) {
+        if (!this.shard.owns(fileName)) {
+            return;
+        }
 
-                    String cacheSnapshot = this.gson.toJson(object);
+        this.newHashes.put(fileName, hash);
+        this.generateStage.add(1, contents.size());
 
-                    // Non-deterministic fields
-                    object.addProperty("releaseTime", currentTime);
-                    object.addProperty("time", currentTime);
+        if (this.isStored(fileName, hash)) {
+            this.skippedFiles.increment();
 
-                    this.uploadWithCacheSnapshot(String.format("v3/versions/loader/%s/%s/%s/json", gameVersion, loaderVersion, side.type), this.gson.toJson(object), cacheSnapshot);
-                }
+            if (this.journal.getUploaded(fileName) != null && !this.journal.isPurged(fileName)) {
+                // Uploaded by a failed run that did not get to purge it
+                this.pipeline.purge(fileName);
             }
+            return;
         }
 
-        System.out.println("[INFO] Generated " + this.arrays.get("game").size() * this.arrays.get("loader").size() + " loader profiles");
+        // Preparing here spreads the compression over the generator threads
+        PayloadInterner.Payload payload = this.payloads.intern(contentType, hash, contents);
+        this.pipeline.submit(fileName, new FileUpload(payload.content(), contentType, payload.contentEncoding(),
+                CachePolicy.forPath(fileName), hash, payload.contentSha1()));
     }
 
-    private void upload(String fileName, String fileContents) {
-        this.upload(fileName, fileContents.getBytes(StandardCharsets.UTF_8), "application/json");
-    }
-
-    private void upload(String fileName, byte[] fileContents, String contentType) {
-        this.uploadWithCacheSnapshot(fileName, fileContents, contentType, fileContents);
-    }
+    /**
+     * Tells whether the storage already holds the file, as of the manifest or of the journal of a failed run since.
+     */
+    private boolean isStored(String fileName, byte[] hash) {
+        byte[] journaled = this.journal.getUploaded(fileName);
+        if (journaled != null) {
+            return Arrays.equals(journaled, hash);
+        }
 
-    private void uploadWithCacheSnapshot(String fileName, String fileContents, String cacheSnapshot) {
-        this.uploadWithCacheSnapshot(fileName, fileContents.getBytes(StandardCharsets.UTF_8), "application/json", cacheSnapshot.getBytes(StandardCharsets.UTF_8));
+        return !this.journal.isDeleted(fileName) && this.previousHashes.matches(fileName, hash);
     }
 
-    private void uploadWithCacheSnapshot(String fileName, byte[] fileContents, String contentType, byte[] cacheSnapshot) {
-        this.seenFiles.add(fileName);
+    /**
+     * Carries a file over from the previous run without generating it, if it was generated from the same inputs.
+     */
+    private boolean skipUnchanged(String fileName, byte[] fingerprint) {
+        this.newFingerprints.put(fileName, fingerprint);
 
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance("SHA-1");
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to get SHA-1 digest");
+        // The manifest no longer describes files a failed run changed since
+        if (this.journal.getUploaded(fileName) != null || this.journal.isDeleted(fileName)) {
+            return false;
         }
-        byte[] hash = digest.digest(cacheSnapshot);
-        String hashString = Base64.getUrlEncoder().encodeToString(hash);
 
-        newHashes.put(fileName, hashString);
-
-        if (this.previousHashes.getOrDefault(fileName, "").equals(hashString)) {
-            this.skippedFiles++;
-            return;
+        byte[] previousHash = this.previousHashes.get(fileName);
+        if (previousHash == null || !this.previousFingerprints.matches(fileName, fingerprint)) {
+            return false;
         }
-        this.files.put(fileName, new FileUpload(fileContents, contentType));
-    }
 
-    private void doUpload() {
-        ExecutorService executor = Executors.newFixedThreadPool(50);
-
-        System.out.println("[INFO] Uploading " + this.files.size() + " file(s) (skipping " + this.skippedFiles + ")");
+        this.newHashes.put(fileName, previousHash);
+        this.skippedFiles.increment();
+        return true;
+    }
 
-        @SuppressWarnings("unchecked")
-        CompletableFuture<Void>[] futures = (CompletableFuture<Void>[]) Array.newInstance(CompletableFuture.class, this.files.size());
-        int i = 0;
+    /**
+     * Carries a whole directory over from the previous run without generating any of it, if it was generated from the
+     * same inputs.
+     *
+     * <p>Whether the directory changed is told by a single fingerprint comparison, instead of one per file. Its files
+     * are then neither generated nor compared, but their hashes and fingerprints are still copied from the previous
+     * manifests, one sorted range each, so the cost stays linear in the size of the directory.</p>
+     *
+     * <p>Directory fingerprints are only as fine as the generator makes them: a game version's directory changes with
+     * every loader release, and only the loader directories inside it are then carried over.</p>
+     */
+    private boolean skipUnchangedTree(String directory, byte[] fingerprint) {
+        String prefix = directory + "/";
+        this.treeFingerprints.put(prefix, fingerprint);
+
+        // Asked again for every generated file kind
+        if (this.carriedTrees.contains(prefix)) {
+            return true;
+        }
 
-        for (String filePath : this.files.keySet()) {
-            futures[i++] = CompletableFuture.runAsync(() -> {
-                FileUpload file = this.files.get(filePath);
+        // Recovered hashes may be missing files, and a failed run may have changed some since the manifest
+        byte[] previousHash = this.previousHashes.get(directory);
+        if (this.recoveredHashes || previousHash == null || !this.previousFingerprints.matches(prefix, fingerprint)
+                || this.journal.hasChangesIn(directory)) {
+            return false;
+        }
 
-                B2ContentSource source = B2ByteArrayContentSource.build(file.content());
+        this.newHashes.put(directory, previousHash);
+        this.skippedFiles.increment();
+        this.previousHashes.forEachUnder(prefix, (path, hash) -> {
+            this.newHashes.put(path, hash);
+            this.skippedFiles.increment();
+        });
+        // The fingerprints of the directories inside it are carried along, for the next run to compare
+        this.previousFingerprints.forEachUnder(prefix, (path, previous) ->
+                (path.endsWith("/") ? this.treeFingerprints : this.newFingerprints).put(path, previous));
 
-                B2UploadFileRequest.Builder builder = B2UploadFileRequest
-                        .builder(this.bucketId, filePath, file.contentType(), source);
+        this.carriedTrees.add(prefix);
+        return true;
+    }
 
-                try {
-                    this.client.uploadSmallFile(builder.build());
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    throw new RuntimeException("Failed to upload " + file);
-                }
-            }, executor);
-        }
-        CompletableFuture.allOf(futures).join();
+    private void deleteOldFiles() {
+        ExecutorService executor = Executors.newFixedThreadPool(Constants.UPLOAD_THREADS);
+        Metrics.Stage stage = this.metrics.stage("delete");
+        stage.start();
 
-        // Delete old files
-        Set<String> oldFiles = new HashSet<>(this.previousHashes.keySet());
-        oldFiles.removeAll(this.seenFiles);
+        Set<String> oldFiles = new HashSet<>(this.previousHashes.paths());
+        // Files only a failed run uploaded are not in the manifest
+        oldFiles.addAll(this.journal.getUploadedPaths());
+        oldFiles.removeAll(this.newHashes.keySet());
+        oldFiles.removeIf(this.journal::isDeleted);
 
         System.out.println("[INFO] Deleting " + oldFiles.size() + " file(s)");
 
         @SuppressWarnings("unchecked")
         CompletableFuture<Void>[] deleteFutures = (CompletableFuture<Void>[]) Array.newInstance(CompletableFuture.class, oldFiles.size());
-        i = 0;
+        int i = 0;
 
         for (String filePath : oldFiles) {
-            deleteFutures[i++] = CompletableFuture.runAsync(() -> {
+            // Files missing from the listing are already gone
+            StoredFile file = this.storedFiles.get(filePath);
+
+            deleteFutures[i++] = file == null ? CompletableFuture.completedFuture(null) : CompletableFuture.runAsync(() -> {
                 try {
-                    B2FileVersion version = this.client.getFileInfoByName(Constants.B2_BUCKET, filePath);
-                    this.client.deleteFileVersion(version.getFileName(), version.getFileId());
+                    long start = System.nanoTime();
+                    this.storage.delete(file);
+                    stage.record(0, System.nanoTime() - start);
+                    this.journal.deleted(filePath);
                 } catch (Exception e) {
                     e.printStackTrace();
                     throw new RuntimeException("Failed to delete " + filePath);
@@ -525,160 +779,231 @@ public class Main {
             }, executor);
         }
         CompletableFuture.allOf(deleteFutures).join();
+        executor.shutdown();
+        stage.stop();
     }
 
-    private void purgeCache() {
-        List<String> urls = new ArrayList<>(this.files.keySet()).stream().map(url -> Constants.BASE_URL + url).toList();
-
-        int requestsRequired = urls.size() / Constants.CF_PURGE_LIMIT_PER_REQUEST + 1;
-        int requestsRemainingPerMinute = Constants.CF_PURGE_LIMIT_PER_MINUTE;
-        long bucketStartTime = System.currentTimeMillis();
-        System.out.println("[INFO] Purging " + this.files.size() + " url (eta. " + urls.size() / Constants.CF_PURGE_LIMIT_PER_MINUTE + " min(s))");
+    /** Lists the storage once, so deletions and hash recovery do not need a request per file. **/
+    private void listStoredFiles() {
+        try {
+            for (StoredFile file : this.storage.list()) {
+                this.storedFiles.put(file.path(), file);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to list the storage");
+        }
 
-        for (int i = 1; i <= requestsRequired; i++) {
-            try {
-                List<String> batch = urls.subList((i - 1) * Constants.CF_PURGE_LIMIT_PER_REQUEST, Math.min(i * Constants.CF_PURGE_LIMIT_PER_REQUEST, urls.size()));
-                requestsRemainingPerMinute -= batch.size();
+        this.metrics.stage("list").add(this.storedFiles.size(), 0);
+        System.out.println("[INFO] Found " + this.storedFiles.size() + " file(s) in the storage");
+    }
 
-                JsonObject body = new JsonObject();
-                body.add("files", this.gson.toJsonTree(batch));
+    /** Gather hashes from the manifest file currently in meta. **/
+    private void populatePreviousHashes() {
+        this.previousHashes = this.readManifest(Constants.MANIFEST_FILE, Constants.LEGACY_MANIFEST_FILE);
+        if (this.previousHashes == null) {
+            System.out.println("[WARN] No usable manifest found. Rebuilding previous hashes from the storage.");
+            this.previousHashes = this.recoverHashes();
+            this.recoveredHashes = true;
+        }
 
-                HttpURLConnection connection = (HttpURLConnection) Constants.CF_PURGE_FILES_ENDPOINT.openConnection();
-                connection.setRequestMethod("POST");
-                connection.setRequestProperty("Content-Type", "application/json");
-                connection.setRequestProperty("Accept", "application/json");
-                connection.setRequestProperty("Authorization", "Bearer " + Constants.CF_KEY);
+        System.out.println("[INFO] Loaded " + this.previousHashes.size() + " previous hashes");
+    }
 
-                connection.setDoOutput(true);
-                try (OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream())) {
-                    this.gson.toJson(body, writer);
-                }
+    /**
+     * Fingerprints the mutable upstream files the meta is generated from, and compares them to those of the last run.
+     *
+     * <p>Everything else, like the launcher meta of every loader, is only ever reached through these files.</p>
+     *
+     * @return {@code true} if the last run was generated by the same build from the same files, so there is nothing to do
+     */
+    private boolean probeUpstream() {
+        List<String> urls = List.of(
+                this.maven.getMetadataUrl(Constants.GROUP, "hashed"),
+                this.maven.getMetadataUrl(Constants.GROUP, "quilt-mappings"),
+                this.maven.getMetadataUrl(Constants.GROUP, Constants.LOADER_ARTIFACT),
+                this.maven.getMetadataUrl(Constants.GROUP, Constants.INSTALLER_ARTIFACT),
+                this.fabric.getMetadataUrl("net.fabricmc", "intermediary"),
+                MinecraftMeta.MANIFEST
+        );
 
-                // Check the status code
-                int responseCode = connection.getResponseCode();
-                if (responseCode != 200) {
-                    String response = new BufferedReader(new InputStreamReader(connection.getErrorStream())).lines().collect(Collectors.joining("\n"));
-                    throw new RuntimeException("Failed to purge batch " + i + " (status code " + responseCode + "): " + response);
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-                throw new RuntimeException("Failed to purge batch " + i);
+        try {
+            for (Map.Entry<String, byte[]> entry : this.upstream.probe(urls).entrySet()) {
+                this.upstreamFingerprints.put(UPSTREAM_PREFIX + entry.getKey(), entry.getValue());
             }
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to probe upstream");
+        }
 
-            if (requestsRemainingPerMinute < Constants.CF_PURGE_LIMIT_PER_REQUEST) {
-                try {
-                    Thread.sleep(60_000 - (System.currentTimeMillis() - bucketStartTime));
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-                requestsRemainingPerMinute = Constants.CF_PURGE_LIMIT_PER_MINUTE;
-                bucketStartTime = System.currentTimeMillis();
+        // A new build may generate different files from the same inputs
+        this.upstreamFingerprints.put(UPSTREAM_PREFIX + "tool", Fingerprint.of(Constants.TOOL_VERSION, String.valueOf(Fingerprint.VERSION)));
+
+        this.previousFingerprints = this.readManifest(Constants.FINGERPRINTS_FILE, Constants.LEGACY_FINGERPRINTS_FILE);
+        if (this.previousFingerprints == null) {
+            System.out.println("[WARN] No previous fingerprints found. All loader files will be regenerated.");
+            this.previousFingerprints = Manifest.EMPTY;
+        }
+
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, byte[]> entry : this.upstreamFingerprints.entrySet()) {
+            if (!this.previousFingerprints.matches(entry.getKey(), entry.getValue())) {
+                changed.add(entry.getKey().substring(UPSTREAM_PREFIX.length()));
             }
         }
-    }
 
-    /** Gather hashes from the manifest file currently in meta. **/
-    private void populatePreviousHashes() {
+        if (Constants.FORCE_REBUILD) {
+            System.out.println("[INFO] FORCE_REBUILD is set, running in full");
+            return false;
+        }
 
-        try {
-            B2ContentMemoryWriter writer = B2ContentMemoryWriter.build();
-            this.client.downloadByName(Constants.B2_BUCKET, Constants.MANIFEST_FILE, writer);
+        if (!changed.isEmpty() && this.previousFingerprints.size() > 0) {
+            Collections.sort(changed);
+            System.out.println("[INFO] Changed upstream: " + String.join(", ", changed));
+        }
 
-            GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(writer.getBytes()));
-            Scanner scanner = new Scanner(gzip);
-            scanner.useDelimiter(";");
+        return changed.isEmpty();
+    }
 
-            while (scanner.hasNext()) {
-                String line = scanner.next();
-                String[] split = line.split(":");
+    private void updateManifest() {
+        // Only keep the fingerprints of files that made it into the manifest
+        this.newFingerprints.keySet().retainAll(this.newHashes.keySet());
+        this.newFingerprints.putAll(this.treeFingerprints);
+        this.newFingerprints.putAll(this.upstreamFingerprints);
+
+        this.writeManifest(Constants.FINGERPRINTS_FILE, Manifest.of(this.newFingerprints));
+        this.writeManifest(Constants.MANIFEST_FILE, Manifest.of(this.newHashes));
+        this.deleteLegacyManifests();
+    }
 
-                if (split.length == 2) {
-                    previousHashes.put(split[0], split[1]);
-                } else {
-                    System.out.println("[WARN] Invalid line in manifest: " + line);
-                }
+    /**
+     * Deletes the manifests in the legacy format once migrated, so a lost manifest is recovered from the storage
+     * instead of from a stale legacy one.
+     */
+    private void deleteLegacyManifests() {
+        for (String fileName : List.of(Constants.LEGACY_MANIFEST_FILE, Constants.LEGACY_FINGERPRINTS_FILE)) {
+            StoredFile file = this.storedFiles.get(fileName);
+            if (file == null) {
+                continue;
             }
 
-        } catch (B2Exception | IOException e) {
-            if (e instanceof B2Exception && ((B2Exception) e).getStatus() == 404) {
-                System.out.println("[WARN] No previous manifest found. All files will be re-uploaded.");
-            } else {
+            try {
+                this.storage.delete(file);
+                this.storedFiles.remove(fileName);
+            } catch (IOException e) {
                 e.printStackTrace();
-                throw new RuntimeException("Failed to download manifest file");
+                throw new RuntimeException("Failed to delete " + fileName);
             }
         }
-
-        System.out.println("[INFO] Loaded " + previousHashes.size() + " previous hashes from the manifest");
     }
 
-    private void updateManifest() {
-        StringBuilder builder = new StringBuilder();
-        for (String file : this.newHashes.keySet()) {
-            builder.append(file).append(":").append(this.newHashes.get(file)).append(";");
+    /**
+     * Rebuilds the previous hashes from the hashes the storage keeps for every file.
+     *
+     * <p>Files are stored along with their manifest hash. Files stored before that only have the hash of their raw
+     * contents, so those hashed differently in the manifest (profiles, which leave their timestamp out) are uploaded
+     * once more.</p>
+     */
+    private Manifest recoverHashes() {
+        Map<String, byte[]> hashes = new HashMap<>();
+
+        for (StoredFile file : this.storedFiles.values()) {
+            // Shards store their manifests next to the internal files, with a suffix
+            if (file.hash() != null && INTERNAL_FILES.stream().noneMatch(file.path()::startsWith)) {
+                hashes.put(file.path(), file.hash());
+            }
         }
 
-        GZIPOutputStream gzip;
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        return Manifest.of(hashes);
+    }
+
+    /**
+     * Reads a manifest from the storage, falling back to the legacy text format if there is none in the binary format yet.
+     *
+     * @return the manifest, or {@code null} if neither file exists or the one found is corrupt
+     */
+    private Manifest readManifest(String fileName, String legacyFileName) {
+        byte[] manifest;
+        boolean legacy = false;
+
         try {
-            gzip = new GZIPOutputStream(out);
-            gzip.write(builder.toString().getBytes(StandardCharsets.UTF_8));
-            gzip.close();
+            manifest = this.storage.get(fileName);
+            if (manifest == null) {
+                manifest = this.storage.get(legacyFileName);
+                legacy = true;
+            }
         } catch (IOException e) {
             e.printStackTrace();
-            throw new RuntimeException("Failed to compress manifest");
+            throw new RuntimeException("Failed to download " + fileName);
         }
 
-        B2UploadFileRequest request = B2UploadFileRequest
-                .builder(this.bucketId, Constants.MANIFEST_FILE, "application/gzip", B2ByteArrayContentSource.build(out.toByteArray()))
-                .build();
-        try {
-            this.client.uploadSmallFile(request);
-        } catch (B2Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to upload manifest");
+        if (manifest == null) {
+            return null;
         }
-    }
 
-    private static String stripInfo(String version) {
-        if (version.contains("+build.")) {
-            return version.substring(0, version.lastIndexOf('+'));
-        } else {
-            //TODO legacy remove when no longer needed
-            char verSep = version.contains("-") ? '-' : '.';
-            return version.substring(0, version.lastIndexOf(verSep));
+        try {
+            if (legacy) {
+                System.out.println("[INFO] Migrating " + legacyFileName + " to " + fileName);
+                return Manifest.readLegacy(manifest);
+            }
+
+            return Manifest.read(manifest);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            System.out.println("[WARN] " + (legacy ? legacyFileName : fileName) + " is corrupt, ignoring it");
+            return null;
         }
     }
 
-    private static <T> JsonArray toJson(Iterable<T> items, Function<T, JsonElement> function) {
-        JsonArray array = new JsonArray();
+    /**
+     * Writes the hashes and fingerprints of the files of this shard, for the merge to combine.
+     */
+    private void writePartialManifests() {
+        this.newFingerprints.keySet().retainAll(this.newHashes.keySet());
+        this.newFingerprints.putAll(this.treeFingerprints);
+        this.newFingerprints.putAll(this.upstreamFingerprints);
 
-        for (T t : items) {
-            JsonElement element = function.apply(t);
+        this.writeManifest(this.shard.partOf(Constants.FINGERPRINTS_FILE), Manifest.of(this.newFingerprints));
+        this.writeManifest(this.shard.partOf(Constants.MANIFEST_FILE), Manifest.of(this.newHashes));
+    }
 
-            if (element != null && !array.contains(element)) {
-                array.add(element);
-            }
+    /**
+     * @return the manifest a shard wrote, or {@code null} if it did not write one
+     * @throws RuntimeException if the manifest is corrupt, as the shard then has to run again
+     */
+    private Manifest readPartialManifest(String fileName) {
+        try {
+            byte[] manifest = this.storage.get(fileName);
+            return manifest == null ? null : Manifest.read(manifest);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to read " + fileName);
         }
-
-        return array;
     }
 
-    private static JsonObject getLibrary(String mavenPath, String url) {
-        JsonObject jsonObject = new JsonObject();
-        jsonObject.addProperty("name", mavenPath);
-        jsonObject.addProperty("url", url);
-        return jsonObject;
+    private void writeManifest(String fileName, Manifest manifest) {
+        try {
+            byte[] bytes = manifest.write();
+            long start = System.nanoTime();
+            this.storage.put(fileName, bytes, "application/octet-stream");
+            this.metrics.stage("manifest").record(bytes.length, System.nanoTime() - start);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Failed to upload " + fileName);
+        }
     }
 
-    private enum Side {
-        CLIENT("client", "profile"), SERVER("server", "server");
-
-        final String side;
-        final String type;
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
 
-        Side(String side, String type) {
-            this.side = side;
-            this.type = type;
+    private static String stripInfo(String version) {
+        if (version.contains("+build.")) {
+            return version.substring(0, version.lastIndexOf('+'));
+        } else {
+            //TODO legacy remove when no longer needed
+            char verSep = version.contains("-") ? '-' : '.';
+            return version.substring(0, version.lastIndexOf(verSep));
         }
     }
 }
@@ -0,0 +1,228 @@
+package org.quiltmc;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An immutable, sorted list of file paths and their SHA-1 digests.
+ *
+ * <p>Paths and digests are kept in two flat arrays, and lookups are binary searches. The binary format stores
+ * the paths in order, each one as the length of the prefix shared with the previous path followed by the rest
+ * of it, and every digest as its raw 20 bytes.</p>
+ */
+public final class Manifest {
+    public static final int DIGEST_LENGTH = 20;
+    public static final Manifest EMPTY = new Manifest(new String[0], new byte[0]);
+
+    private static final byte[] MAGIC = {'Q', 'M', 'M'};
+    private static final int FORMAT_VERSION = 1;
+
+    private final String[] paths;
+    private final byte[] digests;
+
+    private Manifest(String[] paths, byte[] digests) {
+        this.paths = paths;
+        this.digests = digests;
+    }
+
+    public static Manifest of(Map<String, byte[]> hashes) {
+        String[] paths = hashes.keySet().toArray(new String[0]);
+        Arrays.sort(paths);
+
+        byte[] digests = new byte[paths.length * DIGEST_LENGTH];
+        for (int i = 0; i < paths.length; i++) {
+            byte[] digest = hashes.get(paths[i]);
+
+            if (digest.length != DIGEST_LENGTH) {
+                throw new IllegalArgumentException("Invalid digest length for " + paths[i]);
+            }
+
+            System.arraycopy(digest, 0, digests, i * DIGEST_LENGTH, DIGEST_LENGTH);
+        }
+
+        return new Manifest(paths, digests);
+    }
+
+    /**
+     * Reads a manifest in the binary format.
+     */
+    public static Manifest read(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a manifest file");
+        }
+
+        int version = in.readUnsignedByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported manifest version " + version);
+        }
+
+        int count = readVarInt(in);
+        // Every entry takes at least its two lengths and its digest, which bounds the arrays by the data actually there
+        if (count < 0 || count > data.length / (DIGEST_LENGTH + 2)) {
+            throw new IOException("Invalid manifest entry count " + count);
+        }
+
+        String[] paths = new String[count];
+        byte[] digests = new byte[count * DIGEST_LENGTH];
+        byte[] path = new byte[256];
+        int length = 0;
+
+        for (int i = 0; i < count; i++) {
+            int shared = readVarInt(in);
+            int suffix = readVarInt(in);
+
+            if (shared < 0 || shared > length || suffix < 0 || suffix > data.length) {
+                throw new IOException("Invalid manifest entry " + i + " sharing " + shared + " and adding " + suffix + " bytes");
+            }
+
+            length = shared + suffix;
+            if (length > path.length) {
+                path = Arrays.copyOf(path, Math.max(length, path.length * 2));
+            }
+
+            in.readFully(path, shared, suffix);
+            paths[i] = new String(path, 0, length, StandardCharsets.UTF_8);
+            in.readFully(digests, i * DIGEST_LENGTH, DIGEST_LENGTH);
+
+            if (i > 0 && paths[i - 1].compareTo(paths[i]) >= 0) {
+                throw new IOException("Manifest paths are not sorted at " + paths[i]);
+            }
+        }
+
+        return new Manifest(paths, digests);
+    }
+
+    /**
+     * Reads a manifest in the legacy gzipped {@code path:base64 digest;} text format.
+     */
+    public static Manifest readLegacy(byte[] data) throws IOException {
+        Map<String, byte[]> hashes = new HashMap<>();
+
+        Scanner scanner = new Scanner(new GZIPInputStream(new ByteArrayInputStream(data)), StandardCharsets.UTF_8);
+        scanner.useDelimiter(";");
+
+        while (scanner.hasNext()) {
+            String line = scanner.next();
+            String[] split = line.split(":");
+
+            if (split.length == 2) {
+                hashes.put(split[0], Base64.getUrlDecoder().decode(split[1]));
+            } else {
+                System.out.println("[WARN] Invalid line in manifest: " + line);
+            }
+        }
+
+        if (scanner.ioException() != null) {
+            throw scanner.ioException();
+        }
+
+        return of(hashes);
+    }
+
+    public byte[] write() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        try {
+            out.write(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            writeVarInt(out, this.paths.length);
+
+            byte[] previous = new byte[0];
+            for (int i = 0; i < this.paths.length; i++) {
+                byte[] path = this.paths[i].getBytes(StandardCharsets.UTF_8);
+                // Paths are unique, so they always differ somewhere
+                int shared = Arrays.mismatch(previous, path);
+
+                writeVarInt(out, shared);
+                writeVarInt(out, path.length - shared);
+                out.write(path, shared, path.length - shared);
+                out.write(this.digests, i * DIGEST_LENGTH, DIGEST_LENGTH);
+
+                previous = path;
+            }
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new RuntimeException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    public int size() {
+        return this.paths.length;
+    }
+
+    public boolean contains(String path) {
+        return Arrays.binarySearch(this.paths, path) >= 0;
+    }
+
+    /**
+     * Checks whether the manifest lists the path with exactly the given digest.
+     */
+    public boolean matches(String path, byte[] digest) {
+        int index = Arrays.binarySearch(this.paths, path);
+
+        return index >= 0 && Arrays.equals(this.digests, index * DIGEST_LENGTH, (index + 1) * DIGEST_LENGTH, digest, 0, digest.length);
+    }
+
+    /**
+     * Gets the digest of a path, or {@code null} if the manifest does not list it.
+     */
+    public byte[] get(String path) {
+        int index = Arrays.binarySearch(this.paths, path);
+
+        return index < 0 ? null : Arrays.copyOfRange(this.digests, index * DIGEST_LENGTH, (index + 1) * DIGEST_LENGTH);
+    }
+
+    /**
+     * Runs the action for every path starting with the prefix, in sorted order.
+     *
+     * <p>Such paths are next to each other in the sorted list, so this only visits them.</p>
+     */
+    public void forEachUnder(String prefix, BiConsumer<String, byte[]> action) {
+        int index = Arrays.binarySearch(this.paths, prefix);
+
+        for (int i = index < 0 ? -index - 1 : index; i < this.paths.length && this.paths[i].startsWith(prefix); i++) {
+            action.accept(this.paths[i], Arrays.copyOfRange(this.digests, i * DIGEST_LENGTH, (i + 1) * DIGEST_LENGTH));
+        }
+    }
+
+    /**
+     * Gets every path, in sorted order.
+     */
+    public List<String> paths() {
+        return Collections.unmodifiableList(Arrays.asList(this.paths));
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed variable length integer");
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte(value);
+    }
+}
@@ -0,0 +1,25 @@
+package org.quiltmc;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * A Quilt Mappings build, as listed in {@code v3/versions/quilt-mappings}.
+ *
+ * @param hashed the game version of the hashed mappings the build is based on
+ */
+public record MappingsVersion(String gameVersion, String separator, int build, String maven, String version,
+                              String hashed) implements JsonContent {
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("gameVersion").value(this.gameVersion);
+        out.name("separator").value(this.separator);
+        out.name("build").value(this.build);
+        out.name("maven").value(this.maven);
+        out.name("version").value(this.version);
+        out.name("hashed").value(this.hashed);
+        out.endObject();
+    }
+}
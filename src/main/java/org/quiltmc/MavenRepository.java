@@ -4,33 +4,38 @@ import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.net.URL;
 import java.util.*;
 
 public class MavenRepository {
     public final String url;
+    private final Upstream upstream;
 
-    public MavenRepository(String url) {
+    public MavenRepository(String url, Upstream upstream) {
         this.url = url;
+        this.upstream = upstream;
     }
 
     public ArtifactMetadata getMetadata(String group, String name) throws IOException {
-        Collection<String> versions = readVersionsFromPom(String.format("%s%s/%s/maven-metadata.xml",
+        Collection<String> versions = readVersionsFromPom(this.getMetadataUrl(group, name));
+
+        return new ArtifactMetadata(group, name, versions);
+    }
+
+    public String getMetadataUrl(String group, String name) {
+        return String.format("%s%s/%s/maven-metadata.xml",
                 this.url,
                 String.join("/", group.split("\\.")),
                 name
-        ));
-
-        return new ArtifactMetadata(group, name, versions);
+        );
     }
 
-    private static Collection<String> readVersionsFromPom(String path) {
+    private Collection<String> readVersionsFromPom(String path) {
         Collection<String> versions = new LinkedHashSet<>();
 
         try {
-            URL url = new URL(path);
-            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(url.openStream());
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new ByteArrayInputStream(this.upstream.get(path)));
 
             while (reader.hasNext()) {
                 if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("version")) {
@@ -0,0 +1,18 @@
+package org.quiltmc;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * A mappings artifact named after the game version it is for, such as hashed or intermediary.
+ */
+public record MavenVersion(String maven, String version) implements JsonContent {
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("maven").value(this.maven);
+        out.name("version").value(this.version);
+        out.endObject();
+    }
+}
@@ -0,0 +1,52 @@
+package org.quiltmc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Storage that keeps every file in memory. Nothing survives the process.
+ */
+public class MemoryStorage implements Storage {
+    private final Map<String, FileUpload> files = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(String path, FileUpload file) {
+        this.files.put(path, new FileUpload(file.content().clone(), file.contentType(), file.contentEncoding(), file.cacheControl(), file.hash(), file.contentSha1()));
+    }
+
+    @Override
+    public byte[] get(String path) {
+        FileUpload file = this.files.get(path);
+        return file == null ? null : file.content().clone();
+    }
+
+    @Override
+    public void delete(String path) {
+        this.files.remove(path);
+    }
+
+    @Override
+    public Collection<StoredFile> list() {
+        List<StoredFile> list = new ArrayList<>();
+        this.files.forEach((path, file) -> list.add(new StoredFile(path, path, file.hash() != null ? file.hash() : HashingBuffer.sha1(file.content()))));
+        return list;
+    }
+
+    /**
+     * Gets the content type a file was stored with, or {@code null} if it does not exist.
+     */
+    public String getContentType(String path) {
+        FileUpload file = this.files.get(path);
+        return file == null ? null : file.contentType();
+    }
+
+    /**
+     * Gets a file as it was stored, with its encoding and cache policy, or {@code null} if it does not exist.
+     */
+    public FileUpload getFile(String path) {
+        return this.files.get(path);
+    }
+}
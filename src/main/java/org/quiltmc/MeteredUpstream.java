@@ -0,0 +1,37 @@
+package org.quiltmc;
+
+import java.io.IOException;
+
+/**
+ * Records the latency and size of every upstream request into a {@link Metrics.Stage}.
+ */
+public class MeteredUpstream implements Upstream {
+    private final Upstream delegate;
+    private final Metrics.Stage stage;
+
+    public MeteredUpstream(Upstream delegate, Metrics.Stage stage) {
+        this.delegate = delegate;
+        this.stage = stage;
+    }
+
+    @Override
+    public byte[] get(String url) throws IOException {
+        long start = System.nanoTime();
+        byte[] response = this.delegate.get(url);
+        this.stage.record(response.length, System.nanoTime() - start);
+        return response;
+    }
+
+    @Override
+    public byte[] getImmutable(String url) throws IOException {
+        long start = System.nanoTime();
+        byte[] response = this.delegate.getImmutable(url);
+        this.stage.record(response.length, System.nanoTime() - start);
+        return response;
+    }
+
+    @Override
+    public String getStats() {
+        return this.delegate.getStats();
+    }
+}
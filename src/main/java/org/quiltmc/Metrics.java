@@ -0,0 +1,245 @@
+package org.quiltmc;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the wall time, item count, byte count and per-item latency of every stage of a run, along with the peak heap
+ * usage, and exports them for dashboards and the GitHub Actions step summary.
+ */
+public class Metrics {
+    private static final String PREFIX = "quilt_meta_";
+
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private final Instant startTime = Instant.now();
+    private final long start = System.nanoTime();
+
+    /**
+     * @param stages names of the stages to report first, in this order
+     */
+    public Metrics(String... stages) {
+        for (String stage : stages) {
+            this.stage(stage);
+        }
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+    }
+
+    /**
+     * Gets a stage by name, creating it on first use. Stages are reported in the order they were first used.
+     */
+    public synchronized Stage stage(String name) {
+        return this.stages.computeIfAbsent(name, Stage::new);
+    }
+
+    /**
+     * Sums the peak usage of every heap pool since the run started. As the pools peak at different times, this is an
+     * upper bound of the actual peak.
+     */
+    public long getPeakHeap() {
+        long peak = 0;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        return peak;
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("version", Constants.TOOL_VERSION);
+        json.addProperty("startTime", this.startTime.toString());
+        json.addProperty("seconds", seconds(System.nanoTime() - this.start));
+        json.addProperty("peakHeapBytes", this.getPeakHeap());
+
+        JsonArray stages = new JsonArray();
+        for (Stage stage : this.getStages()) {
+            JsonObject object = new JsonObject();
+            object.addProperty("name", stage.name);
+            object.addProperty("seconds", seconds(stage.getWallNanos()));
+            object.addProperty("items", stage.items.sum());
+            object.addProperty("bytes", stage.bytes.sum());
+            object.addProperty("p50Millis", stage.getLatencyPercentile(0.5) / 1e6);
+            object.addProperty("p99Millis", stage.getLatencyPercentile(0.99) / 1e6);
+            stages.add(object);
+        }
+        json.add("stages", stages);
+
+        return json;
+    }
+
+    /**
+     * Formats the metrics for the Prometheus node exporter textfile collector.
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        List<Stage> stages = this.getStages();
+
+        gauge(out, "run_timestamp_seconds", "Time the last run started.", this.startTime.getEpochSecond());
+        gauge(out, "run_duration_seconds", "Wall time of the last run.", seconds(System.nanoTime() - this.start));
+        gauge(out, "peak_heap_bytes", "Peak heap usage of the last run.", this.getPeakHeap());
+
+        header(out, "stage_duration_seconds", "Wall time of each stage of the last run.");
+        stages.forEach(stage -> sample(out, "stage_duration_seconds", stage, "", seconds(stage.getWallNanos())));
+        header(out, "stage_items", "Items processed by each stage of the last run.");
+        stages.forEach(stage -> sample(out, "stage_items", stage, "", stage.items.sum()));
+        header(out, "stage_bytes", "Bytes processed by each stage of the last run.");
+        stages.forEach(stage -> sample(out, "stage_bytes", stage, "", stage.bytes.sum()));
+        header(out, "stage_latency_seconds", "Per-item latency of each stage of the last run.");
+        for (Stage stage : stages) {
+            sample(out, "stage_latency_seconds", stage, ",quantile=\"0.5\"", stage.getLatencyPercentile(0.5) / 1e9);
+            sample(out, "stage_latency_seconds", stage, ",quantile=\"0.99\"", stage.getLatencyPercentile(0.99) / 1e9);
+        }
+
+        return out.toString();
+    }
+
+    /**
+     * Formats the metrics as a Markdown table for the GitHub Actions step summary.
+     */
+    public String toMarkdown() {
+        StringBuilder out = new StringBuilder();
+        out.append("### Quilt Meta ").append(Constants.TOOL_VERSION).append("\n\n");
+        out.append(String.format("Ran for %.1fs, peak heap %d MiB%n%n", seconds(System.nanoTime() - this.start), this.getPeakHeap() >> 20));
+        out.append("| Stage | Time | Items | Bytes | p50 | p99 |\n");
+        out.append("|-------|-----:|------:|------:|----:|----:|\n");
+
+        for (Stage stage : this.getStages()) {
+            out.append(String.format("| %s | %.1fs | %d | %d | %.1fms | %.1fms |%n", stage.name, seconds(stage.getWallNanos()),
+                    stage.items.sum(), stage.bytes.sum(), stage.getLatencyPercentile(0.5) / 1e6, stage.getLatencyPercentile(0.99) / 1e6));
+        }
+
+        return out.toString();
+    }
+
+    /**
+     * Writes {@code metrics.json} and {@code metrics.prom} into {@code directory}, and appends the summary to
+     * {@code stepSummary}. Either may be {@code null} to skip it.
+     */
+    public void export(Path directory, Path stepSummary) throws IOException {
+        if (directory != null) {
+            Files.createDirectories(directory);
+            Files.writeString(directory.resolve("metrics.json"), new GsonBuilder().setPrettyPrinting().create().toJson(this.toJson()));
+            // Written to a temporary file first, as the textfile collector may read it at any time
+            Path temp = directory.resolve("metrics.prom.tmp");
+            Files.writeString(temp, this.toPrometheus());
+            Files.move(temp, directory.resolve("metrics.prom"), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        if (stepSummary != null) {
+            Files.writeString(stepSummary, this.toMarkdown(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private synchronized List<Stage> getStages() {
+        return new ArrayList<>(this.stages.values());
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        header(out, name, help);
+        out.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String help) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(" gauge\n");
+    }
+
+    private static void sample(StringBuilder out, String name, Stage stage, String labels, double value) {
+        out.append(PREFIX).append(name).append("{stage=\"").append(stage.name).append('"').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    /**
+     * One stage of a run. Its wall time spans from the first {@link #start()} to the last {@link #stop()}, so stages
+     * may overlap, like uploads running while files are still being generated.
+     */
+    public static class Stage {
+        private final String name;
+        private final LongAdder items = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private long startNanos;
+        private long stopNanos;
+        private long[] latencies = new long[64];
+        private int latencyCount;
+
+        private Stage(String name) {
+            this.name = name;
+        }
+
+        public synchronized void start() {
+            if (this.startNanos == 0) {
+                this.startNanos = System.nanoTime();
+            }
+        }
+
+        public synchronized void stop() {
+            this.stopNanos = System.nanoTime();
+        }
+
+        /**
+         * Records items that were processed without a latency of their own.
+         */
+        public void add(long items, long bytes) {
+            this.items.add(items);
+            this.bytes.add(bytes);
+        }
+
+        /**
+         * Records a single item, like a request, that took {@code latencyNanos}.
+         */
+        public void record(long bytes, long latencyNanos) {
+            this.add(1, bytes);
+
+            synchronized (this) {
+                if (this.latencyCount == this.latencies.length) {
+                    this.latencies = Arrays.copyOf(this.latencies, this.latencies.length * 2);
+                }
+                this.latencies[this.latencyCount++] = latencyNanos;
+            }
+        }
+
+        public synchronized long getWallNanos() {
+            if (this.startNanos == 0) {
+                return 0;
+            }
+
+            return (this.stopNanos >= this.startNanos ? this.stopNanos : System.nanoTime()) - this.startNanos;
+        }
+
+        /**
+         * Gets a latency percentile with the nearest-rank method, or 0 if no latency was recorded.
+         */
+        public synchronized long getLatencyPercentile(double percentile) {
+            if (this.latencyCount == 0) {
+                return 0;
+            }
+
+            long[] sorted = Arrays.copyOf(this.latencies, this.latencyCount);
+            Arrays.sort(sorted);
+            return sorted[Math.max(0, (int) Math.ceil(percentile * sorted.length) - 1)];
+        }
+    }
+}
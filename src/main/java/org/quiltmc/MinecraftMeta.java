@@ -1,30 +1,16 @@
 package org.quiltmc;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 public class MinecraftMeta {
-    private static final URL MANIFEST;
-
-    static {
-        URL url = null;
-
-        try {
-            url = new URL("https://launchermeta.mojang.com/mc/game/version_manifest.json");
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to load Minecraft version manifest");
-        }
-
-        MANIFEST = url;
-    }
+    static final String MANIFEST = "https://launchermeta.mojang.com/mc/game/version_manifest.json";
 
     private MinecraftMeta() {
     }
@@ -32,12 +18,12 @@ public class MinecraftMeta {
     @SuppressWarnings({"unused", "MismatchedQueryAndUpdateOfCollection"})
     private List<Version> versions;
 
-    public static JsonArray get(MavenRepository.ArtifactMetadata hashedMojmap, Gson gson) {
-        JsonArray versions = new JsonArray();
+    public static List<GameVersion> get(MavenRepository.ArtifactMetadata hashedMojmap, Gson gson, Upstream upstream) {
+        List<GameVersion> versions = new ArrayList<>();
 
         InputStreamReader reader;
         try {
-            reader = new InputStreamReader(MANIFEST.openStream());
+            reader = new InputStreamReader(new ByteArrayInputStream(upstream.get(MANIFEST)), StandardCharsets.UTF_8);
         } catch (IOException e) {
             e.printStackTrace();
             throw new RuntimeException("Failed to load Minecraft version manifest");
@@ -46,12 +32,7 @@ public class MinecraftMeta {
 
         for (Version version : meta.versions) {
             if (hashedMojmap.contains(version.id)) {
-                JsonObject object = new JsonObject();
-
-                object.addProperty("version", version.id);
-                object.addProperty("stable", version.type.equals("release"));
-
-                versions.add(object);
+                versions.add(new GameVersion(version.id, version.type.equals("release")));
             }
         }
 
@@ -0,0 +1,90 @@
+package org.quiltmc;
+
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prepares payloads for upload, sharing one prepared copy between files with identical contents.
+ *
+ * <p>Preparing a payload copies it out of its {@link HashingBuffer}, compresses it if worthwhile and hashes the bytes
+ * that will be stored. Many files have the same contents, like the intermediary and hashed entries of a game version,
+ * so payloads are interned by the hash the manifest records for them: later files with the same hash reuse the bytes,
+ * the compression and the SHA-1 of the first.</p>
+ *
+ * <p>Files with the same contents are generated next to each other, like the latest and stable summaries of a game
+ * version, so only the {@code maxEntries} most recently used payloads are kept. Older ones are dropped as soon as
+ * they fall out of that window, leaving the pipeline's queue as the only holder of payloads waiting for upload.</p>
+ *
+ * <p>Profile hashes leave out their timestamp, which is the same for every profile of a run, so equal hashes still
+ * mean equal contents within a run.</p>
+ */
+final class PayloadInterner {
+    private final Map<String, Payload> payloads;
+    private final LongAdder hits = new LongAdder();
+
+    PayloadInterner(int maxEntries) {
+        this.payloads = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Payload> eldest) {
+                return this.size() > maxEntries;
+            }
+        };
+    }
+
+    Payload intern(String contentType, byte[] hash, HashingBuffer contents) {
+        String key = contentType + ':' + HexFormat.of().formatHex(hash);
+
+        synchronized (this) {
+            Payload payload = this.payloads.get(key);
+
+            if (payload != null) {
+                this.hits.increment();
+                return payload;
+            }
+        }
+
+        // Compression runs outside the lock, so generator threads do not wait on each other
+        Payload payload = prepare(contentType, contents.toByteArray());
+
+        synchronized (this) {
+            Payload existing = this.payloads.putIfAbsent(key, payload);
+            if (existing != null) {
+                return existing;
+            }
+        }
+
+        return payload;
+    }
+
+    /**
+     * Gets how many files reused an already prepared payload.
+     */
+    long getHits() {
+        return this.hits.sum();
+    }
+
+    private static Payload prepare(String contentType, byte[] content) {
+        String encoding = null;
+
+        if (Compression.shouldCompress(contentType, content.length)) {
+            byte[] compressed = Compression.gzip(content);
+
+            if (compressed.length < content.length) {
+                content = compressed;
+                encoding = Compression.GZIP;
+            }
+        }
+
+        return new Payload(content, encoding, HashingBuffer.sha1(content));
+    }
+
+    /**
+     * @param content         the bytes to store
+     * @param contentEncoding the encoding of {@code content}, or {@code null} if it is not compressed
+     * @param contentSha1     the SHA-1 of {@code content}
+     */
+    record Payload(byte[] content, String contentEncoding, byte[] contentSha1) {
+    }
+}
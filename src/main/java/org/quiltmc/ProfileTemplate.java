@@ -0,0 +1,124 @@
+package org.quiltmc;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Assembles launcher profiles from pre-serialized fragments.
+ *
+ * <p>Nearly all of a profile only depends on either the loader or the game version, so both halves are serialized
+ * once and spliced together for every pair. The output is byte for byte what streaming the equivalent object with
+ * {@link JsonContent#newWriter} would produce.</p>
+ */
+final class ProfileTemplate {
+    private static final String INDENT = "    ";
+    private static final byte[] ID_PREFIX = bytes("{\n  \"id\": \"quilt-loader-");
+    private static final byte[] ID_SEPARATOR = bytes("-");
+    private static final byte[] INHERITS_FROM = bytes("\",\n  \"inheritsFrom\": \"");
+    private static final byte[] TYPE = bytes("\",\n  \"type\": \"release\",\n");
+    private static final byte[] LIBRARIES = bytes("  \"arguments\": {\n    \"game\": []\n  },\n  \"libraries\": [\n");
+    private static final byte[] LIBRARIES_END = bytes("\n  ]");
+    private static final byte[] SNAPSHOT_END = bytes("\n}");
+
+    private final String mavenUrl;
+    private final String fabricUrl;
+
+    ProfileTemplate(String mavenUrl, String fabricUrl) {
+        this.mavenUrl = mavenUrl;
+        this.fabricUrl = fabricUrl;
+    }
+
+    /**
+     * Serializes everything a profile takes from the loader version, for the given side.
+     */
+    LoaderFragment loader(LoaderVersion loader, LauncherMeta launcherMeta, String side) {
+        StringBuilder mainClass = new StringBuilder();
+
+        if (launcherMeta.mainClass(side) != null) {
+            mainClass.append("  \"mainClass\": ").append(JsonContent.quote(launcherMeta.mainClass(side))).append(",\n");
+
+            if (side.equals("server") && launcherMeta.mainClass("serverLauncher") != null) {
+                // Add the server launch main class
+                mainClass.append("  \"launcherMainClass\": ").append(JsonContent.quote(launcherMeta.mainClass("serverLauncher"))).append(",\n");
+            }
+        }
+
+        StringBuilder common = new StringBuilder();
+        for (Library library : launcherMeta.libraries("common")) {
+            common.append(library(library)).append(",\n");
+        }
+
+        StringBuilder sided = new StringBuilder();
+        sided.append(library(new Library(loader.maven(), this.mavenUrl)));
+        for (Library library : launcherMeta.libraries(side)) {
+            sided.append(",\n").append(library(library));
+        }
+
+        return new LoaderFragment(bytes(escape(loader.version())), bytes(mainClass.toString()),
+                bytes(common.toString()), bytes(sided.toString()));
+    }
+
+    /**
+     * Serializes everything a profile takes from the game version.
+     */
+    GameFragment game(String gameVersion, MavenVersion hashed, MavenVersion intermediary) {
+        String libraries = library(new Library(hashed.maven(), this.mavenUrl)) + ",\n"
+                + library(new Library(intermediary.maven(), this.fabricUrl)) + ",\n";
+
+        return new GameFragment(bytes(escape(gameVersion)), bytes(libraries));
+    }
+
+    /**
+     * Writes the deterministic part of a profile, up to and including the libraries array, but without closing the object.
+     */
+    void writeDeterministic(HashingBuffer out, GameFragment game, LoaderFragment loader) {
+        out.write(ID_PREFIX);
+        out.write(loader.version);
+        out.write(ID_SEPARATOR);
+        out.write(game.version);
+        out.write(INHERITS_FROM);
+        out.write(game.version);
+        out.write(TYPE);
+        out.write(loader.mainClass);
+        out.write(LIBRARIES);
+        out.write(loader.commonLibraries);
+        out.write(game.libraries);
+        out.write(loader.sidedLibraries);
+        out.write(LIBRARIES_END);
+    }
+
+    /**
+     * Hashes the profile written so far as if it was closed without the non-deterministic fields, giving the cache snapshot hash.
+     */
+    static byte[] snapshotHash(HashingBuffer out) {
+        out.hashOnly(SNAPSHOT_END);
+        return out.hash();
+    }
+
+    /**
+     * Serializes the closing part of a profile, holding the non-deterministic fields.
+     */
+    byte[] timeEnd(String time) {
+        String escaped = JsonContent.quote(time);
+        return bytes(",\n  \"releaseTime\": " + escaped + ",\n  \"time\": " + escaped + "\n}");
+    }
+
+    private static String library(Library library) {
+        // Pretty printing never emits raw newlines inside strings, so the library can be indented line by line
+        return INDENT + library.toJson().replace("\n", "\n" + INDENT);
+    }
+
+    private static String escape(String value) {
+        String quoted = JsonContent.quote(value);
+        return quoted.substring(1, quoted.length() - 1);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    record LoaderFragment(byte[] version, byte[] mainClass, byte[] commonLibraries, byte[] sidedLibraries) {
+    }
+
+    record GameFragment(byte[] version, byte[] libraries) {
+    }
+}
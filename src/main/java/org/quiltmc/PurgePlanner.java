@@ -0,0 +1,114 @@
+package org.quiltmc;
+
+import java.util.*;
+
+/**
+ * Decides how the changed files of a run are purged from the cache.
+ *
+ * <p>Files outside of the per-game loader directories are handed back in batches as soon as they change, so they are
+ * purged while the run goes on. Files under {@code v3/versions/loader/<game>/} are held back until the end of the run:
+ * a game whose directory changed as a whole, or changed in more files than fit in one request, is purged with a single
+ * prefix instead. Once more files changed than can be purged by URL within a minute of rate limit, the whole cache is
+ * purged instead.</p>
+ */
+class PurgePlanner {
+    private static final String LOADER_PREFIX = "v3/versions/loader/";
+
+    private final int batchSize;
+    private final int everythingThreshold;
+    private final List<String> pending = new ArrayList<>();
+    private final Map<String, Set<String>> subtrees = new HashMap<>();
+    private int changed;
+
+    PurgePlanner(int batchSize, int everythingThreshold) {
+        this.batchSize = batchSize;
+        this.everythingThreshold = everythingThreshold;
+    }
+
+    /**
+     * Records a changed file.
+     *
+     * @return a batch of paths that can be purged right away, or {@code null}
+     */
+    synchronized List<String> add(String path) {
+        this.changed++;
+        String subtree = subtreeOf(path);
+
+        if (subtree != null) {
+            this.subtrees.computeIfAbsent(subtree, s -> new HashSet<>()).add(path);
+            return null;
+        }
+
+        this.pending.add(path);
+
+        // Past the threshold everything is purged at the end anyway
+        if (this.pending.size() < this.batchSize || this.changed > this.everythingThreshold) {
+            return null;
+        }
+
+        List<String> batch = new ArrayList<>(this.pending);
+        this.pending.clear();
+        return batch;
+    }
+
+    /**
+     * Plans the purge of everything that was not handed out yet.
+     *
+     * @param allPaths every path the run generated, changed or not
+     */
+    synchronized Plan finish(Collection<String> allPaths) {
+        if (this.changed > this.everythingThreshold) {
+            return new Plan(true, List.of(), List.of());
+        }
+
+        Map<String, Integer> subtreeSizes = new HashMap<>();
+        for (String path : allPaths) {
+            String subtree = subtreeOf(path);
+
+            if (subtree != null && this.subtrees.containsKey(subtree)) {
+                subtreeSizes.merge(subtree, 1, Integer::sum);
+            }
+        }
+
+        List<String> prefixes = new ArrayList<>();
+        List<String> files = new ArrayList<>(this.pending);
+
+        for (Map.Entry<String, Set<String>> entry : this.subtrees.entrySet()) {
+            Set<String> changedFiles = entry.getValue();
+            // Purging the unchanged rest of a directory only costs a few cache misses
+            boolean whole = changedFiles.size() >= subtreeSizes.getOrDefault(entry.getKey(), 0);
+
+            if (changedFiles.size() > 1 && (whole || changedFiles.size() > this.batchSize)) {
+                prefixes.add(entry.getKey());
+            } else {
+                files.addAll(changedFiles);
+            }
+        }
+
+        this.pending.clear();
+        this.subtrees.clear();
+        Collections.sort(prefixes);
+        Collections.sort(files);
+        return new Plan(false, prefixes, files);
+    }
+
+    /**
+     * Gets the game directory a path is in, like {@code v3/versions/loader/1.19.2/}, or {@code null}.
+     */
+    static String subtreeOf(String path) {
+        if (!path.startsWith(LOADER_PREFIX)) {
+            return null;
+        }
+
+        int end = path.indexOf('/', LOADER_PREFIX.length());
+        return end < 0 ? null : path.substring(0, end + 1);
+    }
+
+    /**
+     * @param everything whether the whole cache should be purged, in which case the other lists are empty
+     * @param prefixes   path prefixes to purge everything under
+     * @param files      paths to purge individually
+     */
+    record Plan(boolean everything, List<String> prefixes, List<String> files) {
+    }
+}
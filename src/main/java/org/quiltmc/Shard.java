@@ -0,0 +1,71 @@
+package org.quiltmc;
+
+/**
+ * One of several runs that split the generation and upload of the meta between them.
+ *
+ * <p>Files under a game's loader directory belong to the shard of their game version, so the game x loader matrix is
+ * split by game version and no shard generates files it does not upload. Every other file belongs to the shard of its
+ * path. Ownership only depends on the name, so it is the same in every run.</p>
+ *
+ * @param index the shard, from 1 to {@code count}
+ * @param count the number of shards
+ */
+public record Shard(int index, int count) {
+    /** A single run doing everything. */
+    public static final Shard ALL = new Shard(1, 1);
+
+    private static final String LOADER_PREFIX = "v3/versions/loader/";
+
+    public Shard {
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException("Invalid shard " + index + "/" + count);
+        }
+    }
+
+    /**
+     * Parses a shard written as {@code <index>/<count>}, such as {@code 2/4}.
+     */
+    public static Shard parse(String shard) {
+        int separator = shard.indexOf('/');
+
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid shard " + shard + ", expected <index>/<count>");
+        }
+
+        return new Shard(Integer.parseInt(shard.substring(0, separator)), Integer.parseInt(shard.substring(separator + 1)));
+    }
+
+    public boolean isPartial() {
+        return this.count > 1;
+    }
+
+    public boolean owns(String path) {
+        if (path.startsWith(LOADER_PREFIX)) {
+            int end = path.indexOf('/', LOADER_PREFIX.length());
+            return this.ownsGame(end < 0 ? path.substring(LOADER_PREFIX.length()) : path.substring(LOADER_PREFIX.length(), end));
+        }
+
+        return this.ownsKey(path);
+    }
+
+    public boolean ownsGame(String gameVersion) {
+        return this.ownsKey(gameVersion);
+    }
+
+    /**
+     * Gets the name a shard stores its part of an internal file under, for the merge to combine.
+     */
+    public String partOf(String fileName) {
+        return fileName + "." + this.index + "-of-" + this.count;
+    }
+
+    @Override
+    public String toString() {
+        return this.index + "/" + this.count;
+    }
+
+    private boolean ownsKey(String key) {
+        // String hash codes are specified, so every shard agrees on them
+        return Math.floorMod(key.hashCode(), this.count) == this.index - 1;
+    }
+}
@@ -0,0 +1,45 @@
+package org.quiltmc;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * A place the generated meta files are synced to.
+ */
+public interface Storage {
+    /**
+     * Stores a file, replacing any previous version of it.
+     */
+    void put(String path, FileUpload file) throws IOException;
+
+    /**
+     * Stores an uncompressed file with the default cache policy, replacing any previous version of it.
+     */
+    default void put(String path, byte[] content, String contentType) throws IOException {
+        this.put(path, new FileUpload(content, contentType));
+    }
+
+    /**
+     * Reads a file back from the storage.
+     *
+     * @return the file contents, or {@code null} if the file does not exist
+     */
+    byte[] get(String path) throws IOException;
+
+    /**
+     * Removes a file from the storage. Deleting a missing file is not an error.
+     */
+    void delete(String path) throws IOException;
+
+    /**
+     * Removes a file previously returned by {@link #list()}. Backends that can delete by id skip looking the file up.
+     */
+    default void delete(StoredFile file) throws IOException {
+        this.delete(file.path());
+    }
+
+    /**
+     * Lists every file currently in the storage, along with the hash the manifest recorded for it when known.
+     */
+    Collection<StoredFile> list() throws IOException;
+}
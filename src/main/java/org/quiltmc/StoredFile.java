@@ -0,0 +1,12 @@
+package org.quiltmc;
+
+/**
+ * A file as listed by a {@link Storage}.
+ *
+ * @param path the path of the file
+ * @param id   the backend specific id of this version of the file, used to delete it without looking it up again
+ * @param hash the hash the manifest recorded for the file if it was stored with it, otherwise the SHA-1 of the file
+ *             contents. {@code null} if the backend knows neither
+ */
+public record StoredFile(String path, String id, byte[] hash) {
+}
@@ -0,0 +1,15 @@
+package org.quiltmc;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a {@link Storage} when the backend is overloaded or temporarily unavailable, and the operation may
+ * succeed if retried later.
+ */
+public class ThrottledException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public ThrottledException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,49 @@
+package org.quiltmc;
+
+import java.time.Duration;
+
+/**
+ * Rate limits requests with a token bucket that holds up to {@code capacity} tokens and refills them evenly over
+ * {@code period}.
+ *
+ * <p>Callers that find the bucket empty reserve a future token and sleep until it becomes available, so waiting
+ * callers are served in order and the rate is never exceeded, no matter how many threads share the bucket.</p>
+ */
+public class TokenBucket {
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(int capacity, Duration period) {
+        this.capacity = capacity;
+        this.tokensPerNano = capacity / (double) period.toNanos();
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes a token, waiting until one is available.
+     */
+    public void acquire() throws InterruptedException {
+        long wait = this.reserve();
+
+        if (wait > 0) {
+            Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+        }
+    }
+
+    /**
+     * Takes a token, going into debt if there is none left.
+     *
+     * @return how many nanoseconds to wait before the token may be used
+     */
+    synchronized long reserve() {
+        long now = System.nanoTime();
+        this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefill) * this.tokensPerNano);
+        this.lastRefill = now;
+        this.tokens -= 1;
+
+        return this.tokens >= 0 ? 0 : (long) Math.ceil(-this.tokens / this.tokensPerNano);
+    }
+}
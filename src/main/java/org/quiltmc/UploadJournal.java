@@ -0,0 +1,271 @@
+package org.quiltmc;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An append-only log of the uploads, purges and deletions a run completed, so a run that fails part way can be
+ * resumed without redoing them.
+ *
+ * <p>The manifest is only written once a run succeeds, so after a failed run it still describes the files from before
+ * it. The journal is checkpointed to the storage every so often while the run goes on, and describes what changed since.
+ * The next run reads it back, and deletes it once it wrote its own manifest.</p>
+ *
+ * <p>Entries are text lines: {@code U <hash> <path>} for an upload, {@code P <path>} for a purged file,
+ * {@code X <prefix>} for a purged prefix, {@code E} for a purge of everything and {@code D <path>} for a deletion.
+ * Later entries override earlier ones, so a file uploaded again is only purged by a later purge.</p>
+ */
+public class UploadJournal {
+    private final Storage storage;
+    private final String fileName;
+    private final long checkpointIntervalNanos;
+    private final ReentrantLock checkpointLock = new ReentrantLock();
+    private final StringBuilder log = new StringBuilder();
+    private final Map<String, byte[]> uploadedHashes = new HashMap<>();
+    private final Map<String, Long> uploadedAt = new HashMap<>();
+    private final Map<String, Long> purgedAt = new HashMap<>();
+    private final Map<String, Long> prefixPurgedAt = new HashMap<>();
+    private final Map<String, Long> deletedAt = new HashMap<>();
+    // Every uploaded or deleted path along with its parent directories, so a directory is checked with one lookup
+    private final Set<String> changedDirectories = new HashSet<>();
+    private long everythingPurgedAt = -1;
+    private long entries;
+    private boolean dirty;
+    private boolean stored;
+    private long lastCheckpoint = System.nanoTime();
+
+    /**
+     * @param storage  where the journal is checkpointed, or {@code null} to only keep it in memory
+     * @param fileName the name of the journal in the storage
+     */
+    public UploadJournal(Storage storage, String fileName, long checkpointIntervalMillis) {
+        this.storage = storage;
+        this.fileName = fileName;
+        this.checkpointIntervalNanos = checkpointIntervalMillis * 1_000_000;
+    }
+
+    /**
+     * Reads the journal a failed run left behind, if any, and keeps appending to it.
+     */
+    public static UploadJournal load(Storage storage, String fileName, long checkpointIntervalMillis) throws IOException {
+        UploadJournal journal = new UploadJournal(storage, fileName, checkpointIntervalMillis);
+        byte[] contents = storage.get(fileName);
+
+        if (contents != null) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(contents)), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    journal.append(line);
+                }
+            }
+        }
+
+        journal.dirty = false;
+        journal.stored = contents != null;
+        return journal;
+    }
+
+    public static UploadJournal inMemory() {
+        return new UploadJournal(null, null, Long.MAX_VALUE / 1_000_000);
+    }
+
+    public void uploaded(String path, byte[] hash) {
+        this.record("U " + HexFormat.of().formatHex(hash) + " " + path);
+    }
+
+    public void purged(Collection<String> paths) {
+        for (String path : paths) {
+            this.record("P " + path);
+        }
+    }
+
+    public void purgedPrefixes(Collection<String> prefixes) {
+        for (String prefix : prefixes) {
+            this.record("X " + prefix);
+        }
+    }
+
+    public void purgedEverything() {
+        this.record("E");
+    }
+
+    public void deleted(String path) {
+        this.record("D " + path);
+    }
+
+    /**
+     * @return the hash of the file last uploaded to the path, or {@code null} if there was none or it was deleted since
+     */
+    public synchronized byte[] getUploaded(String path) {
+        return this.uploadedAt.getOrDefault(path, -1L) > this.deletedAt.getOrDefault(path, -1L) ? this.uploadedHashes.get(path) : null;
+    }
+
+    public synchronized Set<String> getUploadedPaths() {
+        return new HashSet<>(this.uploadedAt.keySet());
+    }
+
+    /**
+     * @return whether the path was purged after it was last uploaded
+     */
+    public synchronized boolean isPurged(String path) {
+        long uploaded = this.uploadedAt.getOrDefault(path, -1L);
+        String subtree = PurgePlanner.subtreeOf(path);
+        long purged = Math.max(this.everythingPurgedAt, Math.max(this.purgedAt.getOrDefault(path, -1L),
+                subtree == null ? -1L : this.prefixPurgedAt.getOrDefault(subtree, -1L)));
+        return purged > uploaded;
+    }
+
+    /**
+     * @return whether the path was deleted after it was last uploaded
+     */
+    public synchronized boolean isDeleted(String path) {
+        return this.deletedAt.getOrDefault(path, -1L) > this.uploadedAt.getOrDefault(path, -1L);
+    }
+
+    /**
+     * @return whether anything was uploaded or deleted at the path or under it, as a directory
+     */
+    public synchronized boolean hasChangesIn(String directory) {
+        return this.changedDirectories.contains(directory);
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.entries == 0;
+    }
+
+    /**
+     * Describes what the journal holds, for the logs.
+     */
+    public synchronized String getStats() {
+        return this.uploadedAt.size() + " upload(s), " + this.deletedAt.size() + " deletion(s)";
+    }
+
+    /**
+     * Writes the journal to the storage, if anything was added since the last checkpoint.
+     */
+    public void checkpoint() throws IOException {
+        this.checkpointLock.lock();
+        try {
+            this.writeCheckpoint();
+        } finally {
+            this.checkpointLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the journal from the storage, once the manifest covers everything in it.
+     */
+    public void clear() throws IOException {
+        this.checkpointLock.lock();
+        try {
+            if (this.stored) {
+                this.storage.delete(this.fileName);
+                this.stored = false;
+            }
+
+            synchronized (this) {
+                this.dirty = false;
+            }
+        } finally {
+            this.checkpointLock.unlock();
+        }
+    }
+
+    private void record(String line) {
+        boolean due;
+
+        synchronized (this) {
+            this.append(line);
+            due = System.nanoTime() - this.lastCheckpoint > this.checkpointIntervalNanos;
+        }
+
+        // Whoever finds a checkpoint due writes it, everyone else goes on with their work
+        if (due && this.checkpointLock.tryLock()) {
+            try {
+                this.writeCheckpoint();
+            } catch (IOException e) {
+                // The next checkpoint tries again, and losing the journal only costs redoing work
+                e.printStackTrace();
+                System.out.println("[WARN] Failed to checkpoint the upload journal");
+            } finally {
+                this.checkpointLock.unlock();
+            }
+        }
+    }
+
+    private void writeCheckpoint() throws IOException {
+        if (this.storage == null) {
+            return;
+        }
+
+        String log;
+        synchronized (this) {
+            if (!this.dirty) {
+                return;
+            }
+
+            log = this.log.toString();
+            this.dirty = false;
+            this.lastCheckpoint = System.nanoTime();
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8)) {
+            writer.write(log);
+        }
+
+        try {
+            this.storage.put(this.fileName, bytes.toByteArray(), "application/octet-stream");
+            this.stored = true;
+        } catch (IOException e) {
+            synchronized (this) {
+                this.dirty = true;
+            }
+            throw e;
+        }
+    }
+
+    private void addChangedDirectories(String path) {
+        this.changedDirectories.add(path);
+
+        for (int i = path.indexOf('/'); i >= 0; i = path.indexOf('/', i + 1)) {
+            this.changedDirectories.add(path.substring(0, i));
+        }
+    }
+
+    private synchronized void append(String line) {
+        long index = this.entries;
+
+        if (line.startsWith("U ")) {
+            int separator = line.indexOf(' ', 2);
+            if (separator < 0) {
+                return;
+            }
+
+            String path = line.substring(separator + 1);
+            this.uploadedHashes.put(path, HexFormat.of().parseHex(line.substring(2, separator)));
+            this.uploadedAt.put(path, index);
+            this.addChangedDirectories(path);
+        } else if (line.startsWith("P ")) {
+            this.purgedAt.put(line.substring(2), index);
+        } else if (line.startsWith("X ")) {
+            this.prefixPurgedAt.put(line.substring(2), index);
+        } else if (line.equals("E")) {
+            this.everythingPurgedAt = index;
+        } else if (line.startsWith("D ")) {
+            this.deletedAt.put(line.substring(2), index);
+            this.addChangedDirectories(line.substring(2));
+        } else {
+            // Not written by this version, skip it rather than fail the resume
+            return;
+        }
+
+        this.log.append(line).append('\n');
+        this.entries++;
+        this.dirty = true;
+    }
+}
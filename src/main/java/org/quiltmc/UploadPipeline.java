@@ -0,0 +1,251 @@
+package org.quiltmc;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Uploads files as soon as they are generated, and purges them from the cache as planned by a {@link PurgePlanner}:
+ * most files right after their upload finished, and loader directories with a prefix purge at the end.
+ *
+ * <p>At most {@code maxInFlight} files are held in memory at once. Once that many are waiting or uploading,
+ * {@link #submit(String, FileUpload)} blocks the generator until an upload completes.</p>
+ *
+ * <p>How many of those actually upload at once is decided by an {@link AdaptiveLimiter}. Uploads the storage rejects
+ * with a {@link ThrottledException} are retried with jittered backoff instead of failing the run.</p>
+ *
+ * <p>Completed uploads and purges are recorded in an {@link UploadJournal}, so a failed run can be resumed.</p>
+ */
+public class UploadPipeline {
+    private static final long BASE_BACKOFF_MILLIS = 250;
+    // Cloudflare prefixes leave out the scheme
+    private static final String BASE_HOST = Constants.BASE_URL.substring(Constants.BASE_URL.indexOf("://") + 3);
+
+    private final Storage storage;
+    private final CachePurger purger;
+    private final UploadJournal journal;
+    private final AdaptiveLimiter limiter;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final ExecutorService uploadExecutor;
+    private final ExecutorService purgeExecutor = Executors.newSingleThreadExecutor();
+    private final PurgePlanner purgePlanner = new PurgePlanner(Constants.CF_PURGE_LIMIT_PER_REQUEST, Constants.CF_PURGE_EVERYTHING_THRESHOLD);
+    private final Set<String> uploaded = new ConcurrentSkipListSet<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final AtomicLong retries = new AtomicLong();
+    private final Metrics.Stage uploadStage;
+    private final Metrics.Stage purgeStage;
+    private long startTime;
+
+    public UploadPipeline(Storage storage, CachePurger purger, UploadJournal journal, AdaptiveLimiter limiter, int maxInFlight, Metrics metrics) {
+        this.storage = storage;
+        this.uploadStage = metrics.stage("upload");
+        this.purgeStage = metrics.stage("purge");
+        this.purger = purger;
+        this.journal = journal;
+        this.limiter = limiter;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        // Threads above the current limit simply wait in the limiter
+        this.uploadExecutor = Executors.newFixedThreadPool(limiter.getMaxLimit());
+    }
+
+    /**
+     * Queues a file for upload, blocking while the pipeline is full.
+     */
+    public void submit(String path, FileUpload file) {
+        this.checkFailure();
+
+        synchronized (this) {
+            if (this.startTime == 0) {
+                this.startTime = System.nanoTime();
+                this.uploadStage.start();
+            }
+        }
+
+        try {
+            this.inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while queueing " + path);
+        }
+
+        try {
+            this.uploadExecutor.execute(() -> {
+                try {
+                    this.upload(path, file);
+                    this.uploaded.add(path);
+                    if (file.hash() != null) {
+                        this.journal.uploaded(path, file.hash());
+                    }
+                    this.queuePurge(path);
+                } catch (Throwable e) {
+                    // Errors too, or the file would silently go missing while the run still succeeds
+                    e.printStackTrace();
+                    this.failure.compareAndSet(null, new RuntimeException("Failed to upload " + path, e));
+                } finally {
+                    this.inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Purges a file that changed without being uploaded through this pipeline, such as one uploaded by a {@link Shard}.
+     */
+    public void purge(String path) {
+        this.queuePurge(path);
+    }
+
+    /**
+     * Waits for every queued upload and purge to complete.
+     *
+     * @param allPaths every path of the meta, whether it changed or not, used to tell which directories changed as a whole
+     * @throws RuntimeException if any upload or purge failed
+     */
+    public void finish(Collection<String> allPaths) {
+        try {
+            // Every permit being free means nothing is uploading anymore
+            this.inFlight.acquire(this.maxInFlight);
+            this.inFlight.release(this.maxInFlight);
+            this.uploadExecutor.shutdown();
+            this.uploadStage.stop();
+
+            PurgePlanner.Plan plan = this.purgePlanner.finish(allPaths);
+            this.purgeExecutor.execute(() -> this.runPurge(plan));
+
+            this.purgeExecutor.shutdown();
+            this.purgeExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            this.purgeStage.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for uploads");
+        }
+
+        this.checkFailure();
+        this.printStats();
+    }
+
+    /**
+     * Gets the paths of every file that was uploaded so far.
+     */
+    public Set<String> getUploaded() {
+        return this.uploaded;
+    }
+
+    private void upload(String path, FileUpload file) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            this.limiter.acquire();
+            long start = System.nanoTime();
+            boolean released = false;
+
+            try {
+                // Every attempt goes through put again, so B2 hands out a fresh upload URL instead of the busy one
+                this.storage.put(path, file);
+                long latency = System.nanoTime() - start;
+                released = true;
+                this.limiter.onSuccess(latency);
+                this.uploadStage.record(file.content().length, latency);
+                return;
+            } catch (ThrottledException e) {
+                released = true;
+                this.limiter.onThrottled();
+
+                if (attempt >= Constants.UPLOAD_MAX_ATTEMPTS) {
+                    throw e;
+                }
+            } finally {
+                // Whatever else went wrong, errors included, gives its slot back
+                if (!released) {
+                    this.limiter.onFailure();
+                }
+            }
+
+            this.retries.incrementAndGet();
+            backoff(attempt);
+        }
+    }
+
+    private static void backoff(int attempt) throws InterruptedException {
+        long delay = BASE_BACKOFF_MILLIS << Math.min(attempt - 1, 6);
+        Thread.sleep(ThreadLocalRandom.current().nextLong(delay / 2, delay + 1));
+    }
+
+    private void printStats() {
+        if (this.uploaded.isEmpty()) {
+            return;
+        }
+
+        double seconds = (System.nanoTime() - this.startTime) / 1e9;
+        System.out.printf("[INFO] Uploaded %d files in %.1fs (%.1f files/s, %d retries, final concurrency %d)%n",
+                this.uploaded.size(), seconds, this.uploaded.size() / seconds, this.retries.get(), this.limiter.getLimit());
+    }
+
+    private void queuePurge(String path) {
+        List<String> batch = this.purgePlanner.add(path);
+
+        if (batch != null) {
+            this.purgeExecutor.execute(() -> this.runPurge(new PurgePlanner.Plan(false, List.of(), batch)));
+        }
+    }
+
+    private void runPurge(PurgePlanner.Plan plan) {
+        if (this.failure.get() != null || !plan.everything() && plan.prefixes().isEmpty() && plan.files().isEmpty()) {
+            return;
+        }
+
+        // Started with the first purge, like uploads, so the stage does not cover the generation before it
+        this.purgeStage.start();
+
+        try {
+            if (plan.everything()) {
+                System.out.println("[INFO] Too many files changed, purging the whole cache");
+                this.purger.purgeEverything();
+                this.recordPurge(plan);
+                return;
+            }
+
+            if (!plan.prefixes().isEmpty()) {
+                System.out.println("[INFO] Purging " + plan.prefixes().size() + " loader directories by prefix");
+                this.purger.purgePrefixes(plan.prefixes().stream().map(prefix -> BASE_HOST + prefix).toList());
+            }
+
+            if (!plan.files().isEmpty()) {
+                this.purger.purge(plan.files().stream().map(file -> Constants.BASE_URL + file).toList());
+            }
+
+            this.recordPurge(plan);
+        } catch (Exception e) {
+            e.printStackTrace();
+            this.failure.compareAndSet(null, new RuntimeException("Failed to purge " + plan.prefixes().size() + " prefix(es) and " + plan.files().size() + " url(s)", e));
+        }
+    }
+
+    private void recordPurge(PurgePlanner.Plan plan) {
+        // Nothing was purged, so a resumed run that can purge still has to
+        if (this.purger == CachePurger.NONE) {
+            return;
+        }
+
+        if (plan.everything()) {
+            this.journal.purgedEverything();
+        } else {
+            this.journal.purgedPrefixes(plan.prefixes());
+            this.journal.purged(plan.files());
+        }
+    }
+
+    private void checkFailure() {
+        Throwable throwable = this.failure.get();
+
+        if (throwable != null) {
+            throw new RuntimeException("Sync pipeline failed", throwable);
+        }
+    }
+}
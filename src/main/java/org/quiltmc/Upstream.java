@@ -0,0 +1,23 @@
+package org.quiltmc;
+
+import java.io.IOException;
+
+/**
+ * Where upstream files, like Maven metadata and launcher meta, are read from.
+ */
+public interface Upstream {
+    /**
+     * Gets a file that may change upstream.
+     */
+    byte[] get(String url) throws IOException;
+
+    /**
+     * Gets a file that never changes once published, such as a released artifact.
+     */
+    byte[] getImmutable(String url) throws IOException;
+
+    /**
+     * Describes what was fetched so far, for the logs.
+     */
+    String getStats();
+}
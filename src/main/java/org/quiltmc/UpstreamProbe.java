@@ -0,0 +1,56 @@
+package org.quiltmc;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fetches the mutable upstream files a run starts from before anything else, to tell whether any of them changed
+ * since the last run.
+ *
+ * <p>Probed files are served from memory the first time they are requested afterwards, so probing costs no extra
+ * requests and the run is generated from exactly the files that were fingerprinted.</p>
+ */
+public class UpstreamProbe implements Upstream {
+    private final Upstream delegate;
+    private final Map<String, byte[]> probed = new ConcurrentHashMap<>();
+
+    public UpstreamProbe(Upstream delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Fetches the files and fingerprints them.
+     *
+     * @return the SHA-1 of every file, by URL
+     */
+    public Map<String, byte[]> probe(Collection<String> urls) throws IOException {
+        Map<String, byte[]> fingerprints = new LinkedHashMap<>();
+
+        for (String url : urls) {
+            byte[] response = this.delegate.get(url);
+            this.probed.put(url, response);
+            fingerprints.put(url, HashingBuffer.sha1(response));
+        }
+
+        return fingerprints;
+    }
+
+    @Override
+    public byte[] get(String url) throws IOException {
+        byte[] probed = this.probed.remove(url);
+        return probed != null ? probed : this.delegate.get(url);
+    }
+
+    @Override
+    public byte[] getImmutable(String url) throws IOException {
+        return this.delegate.getImmutable(url);
+    }
+
+    @Override
+    public String getStats() {
+        return this.delegate.getStats();
+    }
+}
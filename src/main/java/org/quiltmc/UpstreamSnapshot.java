@@ -0,0 +1,127 @@
+package org.quiltmc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Records every upstream response of a run into a zip archive, or replays a run from one without any network access.
+ *
+ * <p>Entries are named after their URL without the scheme, like
+ * {@code launchermeta.mojang.com/mc/game/version_manifest.json}, so archives can be inspected and edited by hand.
+ * Archives are written with sorted entries and fixed timestamps, so recording the same responses twice gives the same
+ * bytes.</p>
+ */
+public class UpstreamSnapshot implements Upstream {
+    // 1980-01-01, the earliest time a plain zip entry can hold
+    private static final long ENTRY_TIME = 315532800000L;
+
+    private final Upstream delegate;
+    private final Path archive;
+    private final Map<String, byte[]> responses = new ConcurrentHashMap<>();
+
+    private UpstreamSnapshot(Upstream delegate, Path archive) {
+        this.delegate = delegate;
+        this.archive = archive;
+    }
+
+    /**
+     * Passes every request on to {@code delegate}, keeping the responses until {@link #save()} writes them to
+     * {@code archive}.
+     */
+    public static UpstreamSnapshot record(Upstream delegate, Path archive) {
+        return new UpstreamSnapshot(delegate, archive);
+    }
+
+    /**
+     * Serves every request from {@code archive}. Requests for files that were not recorded fail.
+     */
+    public static UpstreamSnapshot replay(Path archive) throws IOException {
+        UpstreamSnapshot snapshot = new UpstreamSnapshot(null, archive);
+
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(archive))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                snapshot.responses.put(entry.getName(), in.readAllBytes());
+            }
+        }
+
+        return snapshot;
+    }
+
+    @Override
+    public byte[] get(String url) throws IOException {
+        return this.fetch(url, false);
+    }
+
+    @Override
+    public byte[] getImmutable(String url) throws IOException {
+        return this.fetch(url, true);
+    }
+
+    @Override
+    public String getStats() {
+        return this.isRecording()
+                ? this.delegate.getStats() + ", " + this.responses.size() + " recorded"
+                : this.responses.size() + " in snapshot " + this.archive;
+    }
+
+    public boolean isRecording() {
+        return this.delegate != null;
+    }
+
+    /**
+     * Writes the recorded responses to the archive.
+     */
+    public void save() throws IOException {
+        if (!this.isRecording()) {
+            throw new IllegalStateException("Only recordings can be saved");
+        }
+
+        Path parent = this.archive.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        try (OutputStream out = Files.newOutputStream(this.archive); ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (Map.Entry<String, byte[]> response : new TreeMap<>(this.responses).entrySet()) {
+                ZipEntry entry = new ZipEntry(response.getKey());
+                entry.setTime(ENTRY_TIME);
+                zip.putNextEntry(entry);
+                zip.write(response.getValue());
+                zip.closeEntry();
+            }
+        }
+
+        System.out.println("[INFO] Recorded " + this.responses.size() + " upstream responses to " + this.archive);
+    }
+
+    private byte[] fetch(String url, boolean immutable) throws IOException {
+        String name = entryName(url);
+
+        if (!this.isRecording()) {
+            byte[] response = this.responses.get(name);
+
+            if (response == null) {
+                throw new IOException(url + " is not in snapshot " + this.archive);
+            }
+
+            return response;
+        }
+
+        byte[] response = immutable ? this.delegate.getImmutable(url) : this.delegate.get(url);
+        this.responses.put(name, response);
+        return response;
+    }
+
+    private static String entryName(String url) {
+        int scheme = url.indexOf("://");
+        return scheme < 0 ? url : url.substring(scheme + 3);
+    }
+}
@@ -0,0 +1,61 @@
+package org.quiltmc;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * The newest game, loader and installer versions, as listed in {@code v3/versions/latest} and {@code v3/versions/stable}.
+ *
+ * <p>These only take a few hundred bytes, where finding them in the full lists means downloading all of them.
+ * Versions that do not exist are left out.</p>
+ */
+public record VersionSummary(GameVersion game, LoaderVersion loader, InstallerVersion installer) implements JsonContent {
+    /**
+     * @param game      the game versions, newest first
+     * @param loader    the loader versions, newest first
+     * @param installer the installer versions, newest first
+     */
+    public static VersionSummary latest(List<GameVersion> game, List<LoaderVersion> loader, List<InstallerVersion> installer) {
+        return new VersionSummary(first(game, version -> true), first(loader, version -> true), first(installer, version -> true));
+    }
+
+    /**
+     * Like {@link #latest}, but skipping snapshots and pre-releases.
+     */
+    public static VersionSummary stable(List<GameVersion> game, List<LoaderVersion> loader, List<InstallerVersion> installer) {
+        return new VersionSummary(first(game, GameVersion::stable), first(loader, version -> isStable(version.version())),
+                first(installer, version -> isStable(version.version())));
+    }
+
+    /**
+     * Tells whether a loader or installer version is a release rather than a pre-release, such as a beta.
+     */
+    static boolean isStable(String version) {
+        return !version.contains("-");
+    }
+
+    static <T> T first(List<T> versions, Predicate<T> filter) {
+        for (T version : versions) {
+            if (filter.test(version)) {
+                return version;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("game");
+        JsonContent.writeNullable(out, this.game);
+        out.name("loader");
+        JsonContent.writeNullable(out, this.loader);
+        out.name("installer");
+        JsonContent.writeNullable(out, this.installer);
+        out.endObject();
+    }
+}
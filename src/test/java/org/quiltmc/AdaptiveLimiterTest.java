@@ -0,0 +1,91 @@
+package org.quiltmc;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveLimiterTest {
+  @Test
+  public void growsWhileHealthyAndHalvesOnThrottle() throws Exception {
+    AdaptiveLimiter limiter = new AdaptiveLimiter(4, 1, 10);
+
+    for (int i = 0; i < 200; i++) {
+      for (int j = 0; j < limiter.getLimit(); j++) {
+        limiter.acquire();
+      }
+      for (int j = limiter.getLimit(); j > 0; j--) {
+        limiter.onSuccess(1_000_000);
+      }
+    }
+    assertEquals(10, limiter.getLimit());
+
+    Thread.sleep(150);
+    limiter.acquire();
+    limiter.onThrottled();
+    assertEquals(5, limiter.getLimit());
+
+    // A second throttle from the same window does not count again
+    limiter.acquire();
+    limiter.onThrottled();
+    assertEquals(5, limiter.getLimit());
+
+    // Once the cooldown passed it does
+    Thread.sleep(150);
+    limiter.acquire();
+    limiter.onThrottled();
+    assertEquals(2, limiter.getLimit());
+  }
+
+  @Test
+  public void onlyGrowsWhileTheLimitIsReached() throws Exception {
+    AdaptiveLimiter limiter = new AdaptiveLimiter(4, 1, 10);
+
+    // A single operation at a time never hits the limit of four, so that limit is never the bottleneck
+    for (int i = 0; i < 200; i++) {
+      limiter.acquire();
+      limiter.onSuccess(1_000_000);
+    }
+    assertEquals(4, limiter.getLimit());
+  }
+
+  @Test
+  public void trimsOnClimbingLatency() throws Exception {
+    AdaptiveLimiter limiter = new AdaptiveLimiter(10, 1, 10);
+    Thread.sleep(150);
+
+    limiter.acquire();
+    limiter.onSuccess(1_000_000);
+    assertEquals(10, limiter.getLimit());
+
+    // The average needs a few slow round trips to climb past three times the fastest, then trims once per cooldown
+    for (int i = 0; i < 5; i++) {
+      limiter.acquire();
+      limiter.onSuccess(10_000_000);
+    }
+    assertEquals(9, limiter.getLimit());
+  }
+
+  @Test
+  public void neverDropsUnderTheMinimum() throws Exception {
+    AdaptiveLimiter limiter = new AdaptiveLimiter(3, 2, 10);
+    Thread.sleep(150);
+
+    limiter.acquire();
+    limiter.onThrottled();
+    assertEquals(2, limiter.getLimit());
+  }
+
+  @Test(timeout = 10000)
+  public void failuresFreeTheirSlotWithoutChangingTheLimit() throws Exception {
+    AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1);
+    Thread.sleep(150);
+
+    limiter.acquire();
+    limiter.onFailure();
+    assertEquals(1, limiter.getLimit());
+
+    // Would block forever if the failure had kept its slot
+    limiter.acquire();
+    limiter.onSuccess(1_000_000);
+  }
+}
@@ -0,0 +1,83 @@
+package org.quiltmc;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CloudflarePurgerTest {
+  @Test
+  public void sendsBatchesConcurrentlyWithinTheRateLimit() throws IOException {
+    AtomicInteger files = new AtomicInteger();
+    AtomicInteger concurrent = new AtomicInteger();
+    AtomicInteger maxConcurrent = new AtomicInteger();
+    List<JsonObject> others = new ArrayList<>();
+    // Stand-in for the Cloudflare API, answering every request after 50ms
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+
+    server.createContext("/", exchange -> {
+      maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+      JsonObject body = JsonParser.parseReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)).getAsJsonObject();
+
+      if (body.has("files")) {
+        assertTrue(body.getAsJsonArray("files").size() <= Constants.CF_PURGE_LIMIT_PER_REQUEST);
+        files.addAndGet(body.getAsJsonArray("files").size());
+      } else {
+        synchronized (others) {
+          others.add(body);
+        }
+      }
+
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException ignored) {
+      }
+      concurrent.decrementAndGet();
+      exchange.sendResponseHeaders(200, -1);
+      exchange.close();
+    });
+    server.start();
+
+    try {
+      URI endpoint = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/purge_cache");
+      HttpFetcher fetcher = new HttpFetcher(new HostLimiter(Map.of(), 8), Duration.ofSeconds(5), Duration.ofSeconds(5), 1);
+      // Ten requests up front, then one every 50ms
+      CloudflarePurger purger = new CloudflarePurger(fetcher, endpoint, "key", new TokenBucket(10, Duration.ofMillis(500)), 8, new Metrics().stage("purge"));
+      List<String> urls = new ArrayList<>();
+      for (int i = 0; i < 600; i++) {
+        urls.add("https://meta.quiltmc.org/v3/versions/game/" + i);
+      }
+
+      long start = System.nanoTime();
+      purger.purge(urls);
+      long millis = (System.nanoTime() - start) / 1_000_000;
+      purger.purgePrefixes(List.of("meta.quiltmc.org/v3/versions/loader/1.19.2/"));
+      purger.purgeEverything();
+
+      assertEquals(600, files.get());
+      assertTrue(maxConcurrent.get() > 1);
+      // 20 requests with 10 tokens to spare need at least 10 refills
+      assertTrue("took " + millis + "ms", millis >= 450);
+      assertEquals(2, others.size());
+      assertEquals(1, others.get(0).getAsJsonArray("prefixes").size());
+      assertTrue(others.get(1).get("purge_everything").getAsBoolean());
+    } finally {
+      server.stop(0);
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package org.quiltmc;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class FetchSchedulerTest {
+  @Test(timeout = 30000)
+  public void failedFetchLeavesNoThreadsBehind() throws IOException, InterruptedException {
+    // A loader release without launcher meta fails the fetch
+    UpstreamFixture upstream = new UpstreamFixture();
+    upstream.publish("org/quiltmc/quilt-loader", "0.17.0", "0.17.1", "0.17.3");
+
+    assertFalse(new Main(new MemoryStorage(), upstream.source()).build());
+
+    // Shut down executors let their idle threads go right away
+    while (fetchThreads() > 0) {
+      Thread.sleep(10);
+    }
+  }
+
+  private static long fetchThreads() {
+    return Thread.getAllStackTraces().keySet().stream()
+        .filter(thread -> thread.getName().equals(FetchScheduler.THREAD_NAME))
+        .count();
+  }
+}
@@ -0,0 +1,63 @@
+package org.quiltmc;
+
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HostLimiterTest {
+  @Test(timeout = 30000)
+  public void neverExceedsAHostsPermits() throws Exception {
+    HostLimiter limiter = new HostLimiter(Map.of("maven.quiltmc.org", 2), 3);
+    URI uri = URI.create("https://maven.quiltmc.org/repository/release/maven-metadata.xml");
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger peak = new AtomicInteger();
+    List<Thread> threads = new ArrayList<>();
+
+    for (int i = 0; i < 16; i++) {
+      Thread thread = new Thread(() -> {
+        try {
+          for (int j = 0; j < 10; j++) {
+            limiter.acquire(uri);
+            try {
+              peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+              Thread.sleep(1);
+            } finally {
+              running.decrementAndGet();
+              limiter.release(uri);
+            }
+          }
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertTrue("Peak of " + peak.get(), peak.get() <= 2);
+  }
+
+  @Test(timeout = 10000)
+  public void hostsHaveSeparatePermits() throws Exception {
+    HostLimiter limiter = new HostLimiter(Map.of("maven.quiltmc.org", 1), 2);
+
+    // Would block if either host had to wait for the other's permits
+    limiter.acquire(URI.create("https://maven.quiltmc.org/a"));
+    limiter.acquire(URI.create("https://maven.fabricmc.net/a"));
+    limiter.acquire(URI.create("https://maven.fabricmc.net/b"));
+    limiter.acquire(URI.create("https://launchermeta.mojang.com/a"));
+    limiter.acquire(URI.create("https://launchermeta.mojang.com/b"));
+    limiter.release(URI.create("https://maven.quiltmc.org/a"));
+    limiter.acquire(URI.create("https://maven.quiltmc.org/b"));
+  }
+}
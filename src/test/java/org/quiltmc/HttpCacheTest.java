@@ -0,0 +1,65 @@
+package org.quiltmc;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class HttpCacheTest {
+  @Test
+  public void revalidatesAndReusesEntries() throws IOException {
+    AtomicInteger requests = new AtomicInteger();
+    AtomicInteger notModified = new AtomicInteger();
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+    server.createContext("/", exchange -> {
+      requests.incrementAndGet();
+      byte[] body = exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8);
+
+      if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        notModified.incrementAndGet();
+        exchange.sendResponseHeaders(304, -1);
+      } else {
+        exchange.getResponseHeaders().add("ETag", "\"v1\"");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+      }
+      exchange.close();
+    });
+    server.start();
+
+    try {
+      String base = "http://127.0.0.1:" + server.getAddress().getPort();
+      Path root = Files.createTempDirectory("quilt-meta-http-cache");
+
+      for (int run = 0; run < 3; run++) {
+        // A fresh instance per run, like separate CI runs sharing the cache directory
+        HttpCache cache = new HttpCache(new HttpFetcher(new HostLimiter(Map.of(), 2), Duration.ofSeconds(5), Duration.ofSeconds(5), 1), root, Long.MAX_VALUE);
+
+        assertArrayEquals("/maven-metadata.xml".getBytes(StandardCharsets.UTF_8), cache.get(base + "/maven-metadata.xml"));
+        assertArrayEquals("/loader.json".getBytes(StandardCharsets.UTF_8), cache.getImmutable(base + "/loader.json"));
+      }
+
+      // One download of each, then only revalidations of the mutable file
+      assertEquals(4, requests.get());
+      assertEquals(2, notModified.get());
+
+      new HttpCache(new HttpFetcher(new HostLimiter(Map.of(), 2), Duration.ofSeconds(5), Duration.ofSeconds(5), 1), root, 0).evict();
+      try (Stream<Path> files = Files.walk(root)) {
+        assertEquals(0, files.filter(Files::isRegularFile).count());
+      }
+    } finally {
+      server.stop(0);
+    }
+  }
+}
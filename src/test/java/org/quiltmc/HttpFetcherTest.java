@@ -0,0 +1,105 @@
+package org.quiltmc;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HttpFetcherTest {
+  @Test(timeout = 30000)
+  public void retriesUntilTheServerRecovers() throws IOException {
+    AtomicInteger requests = new AtomicInteger();
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+    // Fails twice, with each kind of transient status, then answers
+    server.createContext("/", exchange -> {
+      int request = requests.incrementAndGet();
+      if (request <= 2) {
+        exchange.sendResponseHeaders(request == 1 ? 503 : 429, -1);
+      } else {
+        byte[] body = "<metadata/>".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+      }
+      exchange.close();
+    });
+    server.start();
+
+    try {
+      String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/maven-metadata.xml";
+
+      HttpFetcher.Response response = fetcher(Duration.ofSeconds(5), 3).get(url, Map.of());
+      assertTrue(response.isSuccessful());
+      assertArrayEquals("<metadata/>".getBytes(StandardCharsets.UTF_8), response.body());
+      assertEquals(3, requests.get());
+
+      // Out of attempts, the last transient status is returned as-is
+      requests.set(0);
+      assertEquals(503, fetcher(Duration.ofSeconds(5), 1).get(url, Map.of()).status());
+      assertEquals(1, requests.get());
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void timesOutAndRetriesHangingRequests() throws IOException {
+    AtomicInteger requests = new AtomicInteger();
+    CountDownLatch stopped = new CountDownLatch(1);
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    // Hanging requests must not hold up the ones after them
+    ExecutorService executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+
+    // Hangs on the first request, then answers
+    server.createContext("/", exchange -> {
+      if (requests.incrementAndGet() == 1) {
+        try {
+          stopped.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      } else {
+        exchange.sendResponseHeaders(200, -1);
+      }
+      exchange.close();
+    });
+    server.start();
+
+    try {
+      String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/loader.json";
+
+      assertTrue(fetcher(Duration.ofMillis(200), 2).get(url, Map.of()).isSuccessful());
+      assertEquals(2, requests.get());
+
+      // A single attempt gives up with the timeout as the cause
+      requests.set(0);
+      try {
+        fetcher(Duration.ofMillis(200), 1).get(url, Map.of());
+        fail("Expected the request to time out");
+      } catch (IOException e) {
+        assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof HttpTimeoutException);
+      }
+    } finally {
+      stopped.countDown();
+      server.stop(0);
+      executor.shutdownNow();
+    }
+  }
+
+  private static HttpFetcher fetcher(Duration requestTimeout, int maxAttempts) {
+    return new HttpFetcher(new HostLimiter(Map.of(), 2), Duration.ofSeconds(5), requestTimeout, maxAttempts);
+  }
+}
@@ -0,0 +1,157 @@
+package org.quiltmc;
+
+import com.google.gson.*;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class LoaderGeneratorTest {
+  private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+  @Test
+  public void loaderVersionsMatchGsonOutput() {
+    String launcherMeta = "{\"version\": 1, \"min_java_version\": 17, \"libraries\": {\"client\": [], \"common\": [{\"name\": \"a:b:1\", \"url\": \"https://example.com/?x=y\"}],"
+        + " \"server\": []}, \"mainClass\": {\"client\": \"Client\", \"server\": \"Server\"}}";
+    List<GameVersion> game = List.of(new GameVersion("1.19", true), new GameVersion("1.19-rc1", false));
+    List<LoaderVersion> loader = List.of(new LoaderVersion(".", 1, "org.quiltmc:quilt-loader:0.18.1-beta.1", "0.18.1-beta.1"),
+        new LoaderVersion("+build.", 3, "org.quiltmc:quilt-loader:0.18.0+build.3", "0.18.0"),
+        new LoaderVersion(".", 0, "org.quiltmc:quilt-loader:0.17.0", "0.17.0"));
+    Map<String, MavenVersion> hashed = Map.of("1.19", new MavenVersion("org.quiltmc:hashed:1.19", "1.19"),
+        "1.19-rc1", new MavenVersion("org.quiltmc:hashed:1.19-rc1", "1.19-rc1"));
+    // Game versions without intermediary leave the field out
+    Map<String, MavenVersion> intermediary = Map.of("1.19", new MavenVersion("net.fabricmc:intermediary:1.19", "1.19"));
+    Map<String, LauncherMeta> launcherMetaData = new HashMap<>();
+    for (LoaderVersion version : loader) {
+      launcherMetaData.put(version.maven(), LauncherMeta.parse(launcherMeta));
+    }
+
+    Map<String, String> files = new HashMap<>();
+    new LoaderGenerator(Constants.BASE_MAVEN_URL, Constants.FABRIC_MAVEN_URL, game, loader, hashed, intermediary, launcherMetaData, 2, 1)
+        .generateLoaderVersions((fileName, contentType, hash, contents) -> files.put(fileName, new String(contents.toByteArray(), StandardCharsets.UTF_8)));
+
+    // Every game version also gets its latest and stable summaries, a slim list, two pages and the newest page
+    assertEquals(game.size() * (loader.size() + 7), files.size());
+
+    for (GameVersion gameVersion : game) {
+      JsonArray list = new JsonArray();
+
+      for (LoaderVersion loaderVersion : loader) {
+        JsonObject object = new JsonObject();
+        object.add("loader", JsonParser.parseString(loaderVersion.toJson()));
+        object.add("hashed", JsonParser.parseString(hashed.get(gameVersion.version()).toJson()));
+        if (intermediary.containsKey(gameVersion.version())) {
+          object.add("intermediary", JsonParser.parseString(intermediary.get(gameVersion.version()).toJson()));
+        }
+        object.add("launcherMeta", JsonParser.parseString(launcherMeta));
+        list.add(object);
+
+        assertEquals(this.gson.toJson(object), files.get("v3/versions/loader/" + gameVersion.version() + "/" + loaderVersion.version()));
+      }
+
+      assertEquals(this.gson.toJson(list), files.get("v3/versions/loader/" + gameVersion.version()));
+
+      JsonObject latest = list.get(0).getAsJsonObject().deepCopy();
+      latest.remove("launcherMeta");
+      assertEquals(this.gson.toJson(latest), files.get("v3/versions/loader/" + gameVersion.version() + "/latest"));
+
+      JsonObject stable = list.get(1).getAsJsonObject().deepCopy();
+      stable.remove("launcherMeta");
+      assertEquals(this.gson.toJson(stable), files.get("v3/versions/loader/" + gameVersion.version() + "/stable"));
+
+      JsonObject slim = new JsonObject();
+      slim.add("hashed", latest.get("hashed"));
+      if (latest.has("intermediary")) {
+        slim.add("intermediary", latest.get("intermediary"));
+      }
+      JsonArray loaders = new JsonArray();
+      for (LoaderVersion loaderVersion : loader) {
+        loaders.add(JsonParser.parseString(loaderVersion.toJson()));
+      }
+      slim.add("loader", loaders);
+      assertEquals(this.gson.toJson(slim), files.get("v3/versions/loader/" + gameVersion.version() + "/slim"));
+
+      JsonArray summaries = new JsonArray();
+      for (int i = 0; i < list.size(); i++) {
+        JsonObject summary = list.get(i).getAsJsonObject().deepCopy();
+        summary.remove("launcherMeta");
+        summaries.add(summary);
+      }
+
+      // Pages start from the oldest loader, so only the last one changes with a release
+      JsonObject first = new JsonObject();
+      first.addProperty("page", 1);
+      JsonArray firstVersions = new JsonArray();
+      firstVersions.add(summaries.get(2));
+      firstVersions.add(summaries.get(1));
+      first.add("versions", firstVersions);
+      assertEquals(this.gson.toJson(first), files.get("v3/versions/loader/" + gameVersion.version() + "/page/1"));
+
+      JsonObject second = new JsonObject();
+      second.addProperty("page", 2);
+      JsonArray secondVersions = new JsonArray();
+      secondVersions.add(summaries.get(0));
+      second.add("versions", secondVersions);
+      assertEquals(this.gson.toJson(second), files.get("v3/versions/loader/" + gameVersion.version() + "/page/2"));
+
+      JsonObject newest = new JsonObject();
+      newest.addProperty("pages", 2);
+      JsonArray newestVersions = new JsonArray();
+      newestVersions.add(summaries.get(0));
+      newestVersions.add(summaries.get(1));
+      newest.add("versions", newestVersions);
+      assertEquals(this.gson.toJson(newest), files.get("v3/versions/loader/" + gameVersion.version() + "/newest"));
+    }
+  }
+
+  @Test
+  public void skippedTreesGenerateNothing() {
+    List<GameVersion> game = List.of(new GameVersion("1.19", true), new GameVersion("1.19-rc1", false));
+    List<LoaderVersion> loader = List.of(new LoaderVersion(".", 0, "org.quiltmc:quilt-loader:0.18.0", "0.18.0"),
+        new LoaderVersion(".", 0, "org.quiltmc:quilt-loader:0.17.0", "0.17.0"));
+    Map<String, MavenVersion> hashed = Map.of("1.19", new MavenVersion("org.quiltmc:hashed:1.19", "1.19"),
+        "1.19-rc1", new MavenVersion("org.quiltmc:hashed:1.19-rc1", "1.19-rc1"));
+    Map<String, MavenVersion> intermediary = Map.of("1.19", new MavenVersion("net.fabricmc:intermediary:1.19", "1.19"),
+        "1.19-rc1", new MavenVersion("net.fabricmc:intermediary:1.19-rc1", "1.19-rc1"));
+    Map<String, LauncherMeta> launcherMetaData = new HashMap<>();
+    for (LoaderVersion version : loader) {
+      launcherMetaData.put(version.maven(), LauncherMeta.parse("{\"libraries\": {}, \"mainClass\": {\"client\": \"Client\", \"server\": \"Server\"}}"));
+    }
+
+    Set<String> files = new HashSet<>();
+    FileSink sink = new FileSink() {
+      @Override
+      public void accept(String fileName, String contentType, byte[] hash, HashingBuffer contents) {
+        synchronized (files) {
+          files.add(fileName);
+        }
+      }
+
+      @Override
+      public boolean skipUnchangedTree(String directory, byte[] fingerprint) {
+        // A whole game version, and a single loader version of the other one
+        return directory.equals("v3/versions/loader/1.19-rc1") || directory.equals("v3/versions/loader/1.19/0.17.0");
+      }
+    };
+
+    LoaderGenerator generator = new LoaderGenerator(Constants.BASE_MAVEN_URL, Constants.FABRIC_MAVEN_URL, game, loader,
+        hashed, intermediary, launcherMetaData, 2, 2);
+    generator.generateLoaderVersions(sink);
+    generator.generateProfiles(sink, "2023-01-29T00:00:00+0000");
+
+    for (String file : files) {
+      assertFalse(file, file.startsWith("v3/versions/loader/1.19-rc1"));
+      assertFalse(file, file.startsWith("v3/versions/loader/1.19/0.17.0"));
+    }
+
+    // The rest of the game version is generated as usual, its lists covering the skipped loader version too
+    assertTrue(files.containsAll(List.of("v3/versions/loader/1.19", "v3/versions/loader/1.19/slim", "v3/versions/loader/1.19/page/1",
+        "v3/versions/loader/1.19/0.18.0", "v3/versions/loader/1.19/0.18.0/profile/json", "v3/versions/loader/1.19/0.18.0/server/json")));
+  }
+}
@@ -0,0 +1,103 @@
+package org.quiltmc;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ManifestTest {
+  @Test
+  public void binaryRoundTrip() throws IOException {
+    Map<String, byte[]> hashes = new HashMap<>();
+    hashes.put("v3/versions/loader/1.19.2/0.17.0/profile/json", digest(1));
+    hashes.put("v3/versions/loader/1.19.2/0.17.0", digest(2));
+    hashes.put("v3/versions/loader/1.19.2", digest(3));
+    hashes.put("index.html", digest(4));
+
+    Manifest manifest = Manifest.read(Manifest.of(hashes).write());
+
+    assertEquals(4, manifest.size());
+    assertEquals(List.of("index.html", "v3/versions/loader/1.19.2", "v3/versions/loader/1.19.2/0.17.0",
+        "v3/versions/loader/1.19.2/0.17.0/profile/json"), manifest.paths());
+    assertTrue(manifest.matches("v3/versions/loader/1.19.2/0.17.0", digest(2)));
+    assertFalse(manifest.matches("v3/versions/loader/1.19.2/0.17.0", digest(3)));
+    assertFalse(manifest.matches("v3/versions/loader/1.18.2", digest(3)));
+    assertArrayEquals(digest(1), manifest.get("v3/versions/loader/1.19.2/0.17.0/profile/json"));
+    assertNull(manifest.get("v3/versions"));
+
+    List<String> under = new ArrayList<>();
+    manifest.forEachUnder("v3/versions/loader/1.19.2/", (path, digest) -> under.add(path));
+    assertEquals(List.of("v3/versions/loader/1.19.2/0.17.0", "v3/versions/loader/1.19.2/0.17.0/profile/json"), under);
+  }
+
+  @Test
+  public void rejectsCorruptManifests() throws IOException {
+    byte[] data = Manifest.of(Map.of("v3/versions", digest(1), "v3/versions/loader", digest(2))).write();
+    // The first entry's shared length follows the three byte magic, the version and the count
+    int shared = 5;
+
+    // The first entry has no previous path to share with
+    byte[] corrupt = data.clone();
+    corrupt[shared] = 1;
+    assertThrows(corrupt);
+
+    // The second entry shares more than the first one has
+    corrupt = data.clone();
+    corrupt[shared + 2 + "v3/versions".length() + Manifest.DIGEST_LENGTH] = 12;
+    assertThrows(corrupt);
+
+    // A count the data cannot hold
+    corrupt = data.clone();
+    corrupt[shared - 1] = 0x7F;
+    assertThrows(corrupt);
+
+    // A suffix longer than the data
+    corrupt = data.clone();
+    corrupt[shared + 1] = 0x7F;
+    assertThrows(corrupt);
+
+    assertEquals(2, Manifest.read(data).size());
+  }
+
+  @Test
+  public void readsLegacyManifest() throws IOException {
+    String legacy = "v3/versions:" + Base64.getUrlEncoder().encodeToString(digest(5)) + ";"
+        + "index.html:" + Base64.getUrlEncoder().encodeToString(digest(6)) + ";";
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(legacy.getBytes(StandardCharsets.UTF_8));
+    }
+
+    Manifest manifest = Manifest.readLegacy(out.toByteArray());
+
+    assertEquals(2, manifest.size());
+    assertTrue(manifest.matches("v3/versions", digest(5)));
+    assertTrue(manifest.matches("index.html", digest(6)));
+  }
+
+  private static void assertThrows(byte[] data) {
+    try {
+      Manifest.read(data);
+      fail("Expected the manifest to be rejected");
+    } catch (IOException e) {
+      // Expected
+    }
+  }
+
+  private static byte[] digest(int seed) {
+    byte[] digest = new byte[Manifest.DIGEST_LENGTH];
+    digest[0] = (byte) seed;
+    digest[Manifest.DIGEST_LENGTH - 1] = (byte) (seed * 31);
+    return digest;
+  }
+}
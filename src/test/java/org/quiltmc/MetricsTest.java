@@ -0,0 +1,44 @@
+package org.quiltmc;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+  @Test
+  public void exportsStages() throws IOException {
+    Metrics metrics = new Metrics("fetch", "upload");
+    Metrics.Stage upload = metrics.stage("upload");
+    upload.start();
+    for (int i = 1; i <= 100; i++) {
+      upload.record(10, i * 1_000_000L);
+    }
+    upload.stop();
+
+    assertEquals(50_000_000L, upload.getLatencyPercentile(0.5));
+    assertEquals(99_000_000L, upload.getLatencyPercentile(0.99));
+
+    Path directory = Files.createTempDirectory("quilt-meta-metrics");
+    Path summary = directory.resolve("summary.md");
+    metrics.export(directory, summary);
+    metrics.export(directory, summary);
+
+    JsonObject json = JsonParser.parseString(Files.readString(directory.resolve("metrics.json"))).getAsJsonObject();
+    JsonObject stage = json.getAsJsonArray("stages").get(1).getAsJsonObject();
+    assertEquals("upload", stage.get("name").getAsString());
+    assertEquals(1000, stage.get("bytes").getAsLong());
+    assertEquals(99.0, stage.get("p99Millis").getAsDouble(), 0);
+
+    String prometheus = Files.readString(directory.resolve("metrics.prom"));
+    assertTrue(prometheus.contains("quilt_meta_stage_items{stage=\"upload\"} 100.0\n"));
+    assertTrue(prometheus.contains("quilt_meta_stage_latency_seconds{stage=\"upload\",quantile=\"0.99\"} 0.099\n"));
+    // The step summary is appended to, as other steps write to it too
+    assertEquals(2, Files.readString(summary).split("\\| upload \\|").length - 1);
+  }
+}
@@ -0,0 +1,46 @@
+package org.quiltmc;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class PayloadInternerTest {
+  @Test
+  public void sharesIdenticalPayloads() {
+    PayloadInterner interner = new PayloadInterner(64);
+    String json = "[" + "{\"maven\": \"org.quiltmc:hashed:1.19.2\", \"version\": \"1.19.2\"},".repeat(50) + "{}]";
+
+    PayloadInterner.Payload first = intern(interner, json);
+    PayloadInterner.Payload second = intern(interner, json);
+    PayloadInterner.Payload other = intern(interner, json.replace("1.19.2", "1.18.2"));
+
+    assertSame(first, second);
+    assertNotSame(first, other);
+    assertEquals(1, interner.getHits());
+    assertEquals(Compression.GZIP, first.contentEncoding());
+    assertArrayEquals(HashingBuffer.sha1(first.content()), first.contentSha1());
+  }
+
+  @Test
+  public void evictsTheLeastRecentlyUsed() {
+    PayloadInterner interner = new PayloadInterner(2);
+
+    PayloadInterner.Payload first = intern(interner, "{}");
+    PayloadInterner.Payload second = intern(interner, "[]");
+    // Using the first again makes the second the eldest
+    assertSame(first, intern(interner, "{}"));
+    intern(interner, "null");
+
+    assertSame(first, intern(interner, "{}"));
+    assertNotSame(second, intern(interner, "[]"));
+    assertEquals(2, interner.getHits());
+  }
+
+  private static PayloadInterner.Payload intern(PayloadInterner interner, String json) {
+    HashingBuffer buffer = HashingBuffer.get();
+    buffer.write(json.getBytes(StandardCharsets.UTF_8));
+    return interner.intern("application/json", buffer.hash(), buffer);
+  }
+}
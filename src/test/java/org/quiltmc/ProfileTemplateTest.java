@@ -0,0 +1,57 @@
+package org.quiltmc;
+
+import com.google.gson.*;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ProfileTemplateTest {
+  private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+  @Test
+  public void matchesGsonOutput() {
+    LauncherMeta launcherMeta = LauncherMeta.parse("{"
+        + "\"libraries\": {\"client\": [], \"common\": [{\"name\": \"a:b:1\", \"url\": \"https://example.com/?x=y\"}],"
+        + " \"server\": [{\"name\": \"c:d:2\", \"url\": \"https://example.com/\", \"sha1\": \"abc\", \"size\": 12}]},"
+        + "\"mainClass\": {\"client\": \"Client\", \"server\": \"Server\", \"serverLauncher\": \"Launcher\"}}");
+    LoaderVersion loader = new LoaderVersion(".", 0, "org.quiltmc:quilt-loader:0.17.0", "0.17.0");
+    MavenVersion hashed = new MavenVersion("org.quiltmc:hashed:1.19 Pre-Release 1", "1.19 Pre-Release 1");
+    MavenVersion intermediary = new MavenVersion("net.fabricmc:intermediary:1.19 Pre-Release 1", "1.19 Pre-Release 1");
+
+    ProfileTemplate template = new ProfileTemplate(Constants.BASE_MAVEN_URL, Constants.FABRIC_MAVEN_URL);
+
+    for (String side : new String[] {"client", "server"}) {
+      HashingBuffer out = HashingBuffer.get();
+      template.writeDeterministic(out, template.game("1.19 Pre-Release 1", hashed, intermediary), template.loader(loader, launcherMeta, side));
+      String snapshot = new String(out.toByteArray(), StandardCharsets.UTF_8) + "\n}";
+
+      // The snapshot hash covers the profile without the time fields
+      HashingBuffer expected = HashingBuffer.get();
+      expected.write(snapshot.getBytes(StandardCharsets.UTF_8));
+      byte[] expectedHash = expected.hash();
+      out = HashingBuffer.get();
+      template.writeDeterministic(out, template.game("1.19 Pre-Release 1", hashed, intermediary), template.loader(loader, launcherMeta, side));
+      assertArrayEquals(expectedHash, ProfileTemplate.snapshotHash(out));
+
+      // Re-serializing the parsed profile must give back the exact same bytes
+      JsonObject profile = JsonParser.parseString(snapshot).getAsJsonObject();
+      assertEquals(this.gson.toJson(profile), snapshot);
+
+      assertEquals("quilt-loader-0.17.0-1.19 Pre-Release 1", profile.get("id").getAsString());
+      assertEquals(side.equals("client") ? "Client" : "Server", profile.get("mainClass").getAsString());
+      assertEquals(side.equals("server"), profile.has("launcherMainClass"));
+      assertEquals(side.equals("client") ? 4 : 5, profile.getAsJsonArray("libraries").size());
+      // Upstream libraries keep every field
+      if (side.equals("server")) {
+        assertEquals(12, profile.getAsJsonArray("libraries").get(4).getAsJsonObject().get("size").getAsInt());
+      }
+
+      out.write(template.timeEnd("2023-01-29T00:00:00+0000"));
+      profile.addProperty("releaseTime", "2023-01-29T00:00:00+0000");
+      profile.addProperty("time", "2023-01-29T00:00:00+0000");
+      assertEquals(this.gson.toJson(profile), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package org.quiltmc;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PurgePlannerTest {
+  @Test
+  public void collapsesLoaderDirectories() {
+    PurgePlanner planner = new PurgePlanner(30, 1000);
+    List<String> all = new ArrayList<>();
+
+    for (int i = 0; i < 10; i++) {
+      // 1.19.2 changed as a whole, 1.18.2 only in a single loader
+      all.add("v3/versions/loader/1.19.2/0.17." + i);
+      all.add("v3/versions/loader/1.18.2/0.17." + i);
+      assertNull(planner.add("v3/versions/loader/1.19.2/0.17." + i));
+    }
+    assertNull(planner.add("v3/versions/loader/1.18.2/0.17.9"));
+    assertNull(planner.add("v3/versions/loader/1.18.2"));
+
+    PurgePlanner.Plan plan = planner.finish(all);
+
+    assertFalse(plan.everything());
+    assertEquals(List.of("v3/versions/loader/1.19.2/"), plan.prefixes());
+    assertEquals(List.of("v3/versions/loader/1.18.2", "v3/versions/loader/1.18.2/0.17.9"), plan.files());
+  }
+
+  @Test
+  public void purgesEverythingPastTheThreshold() {
+    PurgePlanner planner = new PurgePlanner(30, 50);
+    int streamed = 0;
+
+    for (int i = 0; i < 100; i++) {
+      List<String> batch = planner.add("v3/versions/game/" + i);
+      streamed += batch == null ? 0 : batch.size();
+    }
+
+    assertEquals(30, streamed);
+    assertTrue(planner.finish(List.of()).everything());
+  }
+}
@@ -0,0 +1,49 @@
+package org.quiltmc;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ShardTest {
+  @Test
+  public void everyFileHasOneOwner() {
+    List<String> paths = List.of("v3/versions", "v3/versions/loader", "v3/versions/loader/1.19.2", "v3/versions/loader/1.19.2/0.17.1",
+        "v3/versions/loader/1.19.2/0.17.1/profile/json", "v3/versions/loader/1.18.2/0.17.0/server/json", "index.html");
+
+    for (String path : paths) {
+      int owners = 0;
+      for (int i = 1; i <= 3; i++) {
+        owners += new Shard(i, 3).owns(path) ? 1 : 0;
+      }
+      assertEquals(path, 1, owners);
+    }
+
+    // A game's loader directory is never split
+    Shard shard = Shard.parse("2/3");
+    assertEquals(shard.ownsGame("1.19.2"), shard.owns("v3/versions/loader/1.19.2"));
+    assertEquals(shard.ownsGame("1.19.2"), shard.owns("v3/versions/loader/1.19.2/0.17.1/profile/json"));
+    assertTrue(Shard.ALL.owns("v3/versions"));
+  }
+
+  @Test
+  public void mergedShardsMatchASingleRun() throws IOException {
+    UpstreamFixture upstream = new UpstreamFixture();
+
+    MemoryStorage single = new MemoryStorage();
+    assertTrue(new Main(single, upstream.source()).build());
+
+    MemoryStorage sharded = new MemoryStorage();
+    assertTrue(new Main(sharded, upstream.source(), Shard.parse("1/2")).build());
+    // The merge refuses to run until every shard finished
+    assertFalse(new Main(sharded, upstream.source()).merge(2));
+    assertTrue(new Main(sharded, upstream.source(), Shard.parse("2/2")).build());
+    assertTrue(new Main(sharded, upstream.source()).merge(2));
+
+    assertEquals(UpstreamFixture.snapshot(single).keySet(), UpstreamFixture.snapshot(sharded).keySet());
+    assertArrayEquals(single.get(Constants.MANIFEST_FILE), sharded.get(Constants.MANIFEST_FILE));
+    assertArrayEquals(single.get(Constants.FINGERPRINTS_FILE), sharded.get(Constants.FINGERPRINTS_FILE));
+  }
+}
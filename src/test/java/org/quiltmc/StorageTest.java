@@ -0,0 +1,86 @@
+package org.quiltmc;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class StorageTest {
+  @Test
+  public void memoryStorage() throws IOException {
+    roundTrip(new MemoryStorage());
+  }
+
+  @Test
+  public void fileSystemStorage() throws IOException {
+    roundTrip(new FileSystemStorage(Files.createTempDirectory("quilt-meta-storage")));
+  }
+
+  private static void roundTrip(Storage storage) throws IOException {
+    // A meta path can be both a file and the parent of other files
+    storage.put("v3/versions/loader/1.19.2", bytes("list"), "application/json");
+    storage.put("v3/versions/loader/1.19.2/0.17.0", bytes("entry"), "application/json");
+
+    assertArrayEquals(bytes("list"), storage.get("v3/versions/loader/1.19.2"));
+    assertArrayEquals(bytes("entry"), storage.get("v3/versions/loader/1.19.2/0.17.0"));
+    assertNull(storage.get("v3/versions/loader/1.18.2"));
+    assertEquals(Set.of("v3/versions/loader/1.19.2", "v3/versions/loader/1.19.2/0.17.0"), paths(storage));
+
+    // The listing carries the content hash, so a lost manifest can be rebuilt from it
+    for (StoredFile file : storage.list()) {
+      assertArrayEquals(HashingBuffer.sha1(storage.get(file.path())), file.hash());
+    }
+
+    storage.delete("v3/versions/loader/1.19.2");
+    storage.delete("v3/versions/loader/1.18.2");
+
+    assertNull(storage.get("v3/versions/loader/1.19.2"));
+    assertEquals(Set.of("v3/versions/loader/1.19.2/0.17.0"), paths(storage));
+
+    storage.delete(storage.list().iterator().next());
+    assertTrue(storage.list().isEmpty());
+  }
+
+  @Test
+  public void compressedFiles() throws IOException {
+    byte[] json = bytes("[" + "{\"version\": \"1.19.2\"},".repeat(100) + "{}]");
+    assertTrue(Compression.shouldCompress("application/json", json.length));
+    FileUpload upload = new FileUpload(Compression.gzip(json), "application/json", Compression.GZIP,
+        CachePolicy.forPath("v3/versions/loader/1.19.2/0.17.0"), null, null);
+
+    MemoryStorage memory = new MemoryStorage();
+    memory.put("v3/versions/loader/1.19.2/0.17.0", upload);
+    assertEquals(CachePolicy.VERSION, memory.getFile("v3/versions/loader/1.19.2/0.17.0").cacheControl());
+    assertEquals(Compression.GZIP, memory.getFile("v3/versions/loader/1.19.2/0.17.0").contentEncoding());
+
+    // The local directory keeps files readable
+    Storage fileSystem = new FileSystemStorage(Files.createTempDirectory("quilt-meta-storage"));
+    fileSystem.put("v3/versions/loader/1.19.2/0.17.0", upload);
+    assertArrayEquals(json, fileSystem.get("v3/versions/loader/1.19.2/0.17.0"));
+  }
+
+  @Test
+  public void cachePolicies() {
+    assertEquals(CachePolicy.INDEX, CachePolicy.forPath("v3/versions"));
+    assertEquals(CachePolicy.INDEX, CachePolicy.forPath("v3/versions/game/intermediary"));
+    assertEquals(CachePolicy.INDEX, CachePolicy.forPath("v3/versions/loader/1.19.2"));
+    assertEquals(CachePolicy.INDEX, CachePolicy.forPath("v3/versions/loader/1.19.2/stable"));
+    assertEquals(CachePolicy.INDEX, CachePolicy.forPath("v3/versions/loader/1.19.2/page/2"));
+    assertEquals(CachePolicy.VERSION, CachePolicy.forPath("v3/versions/loader/1.19.2/0.17.0/profile/json"));
+    assertEquals(CachePolicy.VERSION, CachePolicy.forPath("v3/versions/hashed/1.19.2"));
+    assertEquals(CachePolicy.STATIC, CachePolicy.forPath("swagger-ui-bundle.js"));
+  }
+
+  private static Set<String> paths(Storage storage) throws IOException {
+    return storage.list().stream().map(StoredFile::path).collect(Collectors.toSet());
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
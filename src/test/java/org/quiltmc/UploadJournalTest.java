@@ -0,0 +1,109 @@
+package org.quiltmc;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class UploadJournalTest {
+  @Test
+  public void laterEntriesWin() throws IOException {
+    MemoryStorage storage = new MemoryStorage();
+    UploadJournal journal = new UploadJournal(storage, Constants.JOURNAL_FILE, 0);
+    journal.uploaded("v3/versions", new byte[] {1});
+    journal.uploaded("v3/versions/loader/1.19.2/0.17.1", new byte[] {2});
+    journal.purged(List.of("v3/versions"));
+    journal.uploaded("v3/versions", new byte[] {3});
+    journal.purgedPrefixes(List.of("v3/versions/loader/1.19.2/"));
+    journal.uploaded("old", new byte[] {4});
+    journal.deleted("old");
+
+    // Every entry was checkpointed right away, so a new run reads all of them back
+    UploadJournal resumed = UploadJournal.load(storage, Constants.JOURNAL_FILE, 0);
+    assertArrayEquals(new byte[] {3}, resumed.getUploaded("v3/versions"));
+    assertFalse(resumed.isPurged("v3/versions"));
+    assertTrue(resumed.isPurged("v3/versions/loader/1.19.2/0.17.1"));
+    assertNull(resumed.getUploaded("old"));
+    assertTrue(resumed.isDeleted("old"));
+    assertTrue(resumed.hasChangesIn("v3/versions/loader/1.19.2"));
+    assertTrue(resumed.hasChangesIn("old"));
+    assertFalse(resumed.hasChangesIn("v3/versions/loader/1.19"));
+
+    resumed.clear();
+    assertNull(storage.get(Constants.JOURNAL_FILE));
+  }
+
+  @Test
+  public void resumedRunOnlyUploadsTheRest() throws IOException {
+    UpstreamFixture upstream = new UpstreamFixture();
+
+    MemoryStorage backing = new MemoryStorage();
+    Set<String> uploaded = ConcurrentHashMap.newKeySet();
+    // Collected rather than asserted, as uploads run on the pipeline's threads
+    Set<String> duplicates = ConcurrentHashMap.newKeySet();
+    AtomicInteger budget = new AtomicInteger(10);
+    Storage storage = new Storage() {
+      @Override
+      public void put(String path, FileUpload file) throws IOException {
+        if (!path.startsWith("_")) {
+          if (budget.decrementAndGet() < 0) {
+            throw new IOException("Connection reset");
+          }
+          if (!uploaded.add(path)) {
+            duplicates.add(path);
+          }
+        }
+        backing.put(path, file);
+      }
+
+      @Override
+      public byte[] get(String path) {
+        return backing.get(path);
+      }
+
+      @Override
+      public void delete(String path) {
+        backing.delete(path);
+      }
+
+      @Override
+      public Collection<StoredFile> list() {
+        return backing.list();
+      }
+    };
+
+    assertFalse(new Main(storage, upstream.source()).build());
+    assertNotNull(backing.get(Constants.JOURNAL_FILE));
+
+    budget.set(Integer.MAX_VALUE);
+    assertTrue(new Main(storage, upstream.source()).build());
+    assertNull(backing.get(Constants.JOURNAL_FILE));
+    assertEquals(Set.of(), duplicates);
+
+    MemoryStorage single = new MemoryStorage();
+    assertTrue(new Main(single, upstream.source()).build());
+    assertEquals(UpstreamFixture.snapshot(single).keySet(), UpstreamFixture.snapshot(backing).keySet());
+  }
+
+  @Test
+  public void resumedChangesBlockTheCarryOver() throws IOException {
+    UpstreamFixture upstream = new UpstreamFixture();
+
+    MemoryStorage storage = new MemoryStorage();
+    assertTrue(new Main(storage, upstream.source()).build());
+
+    // A failed run deleted a loader file after the manifest was written
+    String file = "v3/versions/loader/1.19.2/0.17.1";
+    storage.delete(file);
+    new UploadJournal(storage, Constants.JOURNAL_FILE, 0).deleted(file);
+
+    // Nothing about the loaders changed, so without the journal the directory would be carried over without the file
+    upstream.publish("org/quiltmc/quilt-installer", "0.5.0", "0.5.1");
+    assertTrue(new Main(storage, upstream.source()).build());
+    assertNotNull(storage.get(file));
+  }
+}
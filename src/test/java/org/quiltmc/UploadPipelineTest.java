@@ -0,0 +1,149 @@
+package org.quiltmc;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class UploadPipelineTest {
+  @Test
+  public void uploadsAndPurgesEveryFile() throws IOException {
+    MemoryStorage storage = new MemoryStorage();
+    List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+    List<String> prefixes = Collections.synchronizedList(new ArrayList<>());
+    CachePurger purger = new CachePurger() {
+      @Override
+      public void purge(List<String> urls) {
+        batches.add(urls);
+      }
+
+      @Override
+      public void purgePrefixes(List<String> list) {
+        prefixes.addAll(list);
+      }
+
+      @Override
+      public void purgeEverything() {
+        fail("Nothing should purge everything");
+      }
+    };
+    UploadPipeline pipeline = new UploadPipeline(storage, purger, UploadJournal.inMemory(), new AdaptiveLimiter(4, 1, 4), 8, new Metrics());
+
+    for (int i = 0; i < 100; i++) {
+      pipeline.submit("file/" + i, new FileUpload(new byte[] {(byte) i}, "application/json"));
+    }
+    for (int i = 0; i < 3; i++) {
+      pipeline.submit("v3/versions/loader/1.19.2/0.17." + i, new FileUpload(new byte[] {(byte) i}, "application/json"));
+    }
+    pipeline.finish(pipeline.getUploaded());
+
+    assertEquals(103, storage.list().size());
+    assertEquals(103, pipeline.getUploaded().size());
+    assertEquals(100, batches.stream().mapToInt(List::size).sum());
+    assertTrue(batches.stream().allMatch(batch -> batch.size() <= Constants.CF_PURGE_LIMIT_PER_REQUEST));
+    assertEquals(List.of("meta.quiltmc.org/v3/versions/loader/1.19.2/"), prefixes);
+  }
+
+  @Test
+  public void failedUploadFailsTheRun() {
+    Storage storage = new MemoryStorage() {
+      @Override
+      public void put(String path, FileUpload file) {
+        throw new IllegalStateException("Bucket is on fire");
+      }
+    };
+    UploadPipeline pipeline = new UploadPipeline(storage, CachePurger.NONE, UploadJournal.inMemory(), new AdaptiveLimiter(2, 1, 2), 2, new Metrics());
+
+    pipeline.submit("file", new FileUpload(new byte[0], "application/json"));
+
+    try {
+      pipeline.finish(List.of());
+    } catch (RuntimeException e) {
+      return;
+    }
+    fail("Expected the pipeline to fail");
+  }
+
+  @Test(timeout = 10000)
+  public void errorsFailTheRunAndFreeTheirSlot() throws InterruptedException {
+    Storage storage = new MemoryStorage() {
+      @Override
+      public void put(String path, FileUpload file) {
+        throw new AssertionError("Not an exception");
+      }
+    };
+    AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1);
+    UploadPipeline pipeline = new UploadPipeline(storage, CachePurger.NONE, UploadJournal.inMemory(), limiter, 2, new Metrics());
+
+    pipeline.submit("file", new FileUpload(new byte[0], "application/json"));
+
+    try {
+      pipeline.finish(List.of());
+      fail("Expected the pipeline to fail");
+    } catch (RuntimeException e) {
+      // The only slot was given back, or this waits forever
+      limiter.acquire();
+    }
+  }
+
+  @Test
+  public void retriesThrottledUploads() throws IOException {
+    AtomicInteger concurrent = new AtomicInteger();
+    AtomicInteger throttled = new AtomicInteger();
+    AtomicInteger attempts = new AtomicInteger();
+    // Stand-in for B2: answers 503 to every upload past 12 at once
+    MemoryStorage backing = new MemoryStorage();
+    Storage storage = new Storage() {
+      @Override
+      public void put(String path, FileUpload file) throws IOException {
+        int load = concurrent.incrementAndGet();
+        attempts.incrementAndGet();
+        try {
+          if (load > 12) {
+            throttled.incrementAndGet();
+            throw new ThrottledException("503 Service Unavailable", null);
+          }
+          Thread.sleep(2);
+          backing.put(path, file);
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        } finally {
+          concurrent.decrementAndGet();
+        }
+      }
+
+      @Override
+      public byte[] get(String path) {
+        return backing.get(path);
+      }
+
+      @Override
+      public void delete(String path) {
+        backing.delete(path);
+      }
+
+      @Override
+      public Collection<StoredFile> list() {
+        return backing.list();
+      }
+    };
+    AdaptiveLimiter limiter = new AdaptiveLimiter(8, 1, 64);
+    UploadPipeline pipeline = new UploadPipeline(storage, CachePurger.NONE, UploadJournal.inMemory(), limiter, 128, new Metrics());
+
+    for (int i = 0; i < 2000; i++) {
+      pipeline.submit("file/" + i, new FileUpload(new byte[] {(byte) i}, "application/json"));
+    }
+    pipeline.finish(List.of());
+
+    // The limit grew past what the storage takes, and every throttled upload was retried until it went through
+    assertTrue(throttled.get() > 0);
+    assertEquals(2000, storage.list().size());
+    assertEquals(2000 + throttled.get(), attempts.get());
+  }
+}
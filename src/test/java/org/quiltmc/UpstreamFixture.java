@@ -0,0 +1,80 @@
+package org.quiltmc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A replayable upstream for a small meta with two game versions and two loaders, and the launcher meta of a third loader.
+ */
+final class UpstreamFixture {
+  private final Map<String, String> responses = new HashMap<>();
+  private final Path archive;
+
+  UpstreamFixture() throws IOException {
+    this.archive = Files.createTempDirectory("quilt-meta-upstream").resolve("snapshot.zip");
+
+    this.responses.put(Constants.BASE_MAVEN_URL + "org/quiltmc/quilt-loader/maven-metadata.xml", metadata("0.17.0", "0.17.1"));
+    this.responses.put(Constants.BASE_MAVEN_URL + "org/quiltmc/hashed/maven-metadata.xml", metadata("1.18.2", "1.19.2"));
+    this.responses.put(Constants.BASE_MAVEN_URL + "org/quiltmc/quilt-mappings/maven-metadata.xml", metadata("1.19.2+build.1"));
+    this.responses.put(Constants.BASE_MAVEN_URL + "org/quiltmc/quilt-installer/maven-metadata.xml", metadata("0.5.0"));
+    this.responses.put(Constants.FABRIC_MAVEN_URL + "net/fabricmc/intermediary/maven-metadata.xml", metadata("1.18.2", "1.19.2"));
+    this.responses.put("https://launchermeta.mojang.com/mc/game/version_manifest.json",
+        "{\"versions\": [{\"id\": \"1.19.2\", \"type\": \"release\"}, {\"id\": \"1.18.2\", \"type\": \"release\"}]}");
+    for (String loader : new String[] {"0.17.0", "0.17.1", "0.17.2"}) {
+      this.responses.put(Constants.BASE_MAVEN_URL + "org/quiltmc/quilt-loader/" + loader + "/quilt-loader-" + loader + ".json",
+          "{\"version\": 1, \"libraries\": {\"client\": [], \"common\": [{\"name\": \"org.ow2.asm:asm:9.3\", \"url\": \"" + Constants.FABRIC_MAVEN_URL + "\"}], \"server\": []},"
+              + " \"mainClass\": {\"client\": \"org.quiltmc.loader.impl.launch.knot.KnotClient\", \"server\": \"org.quiltmc.loader.impl.launch.knot.KnotServer\"}}");
+    }
+
+    this.write();
+  }
+
+  /**
+   * The upstream argument that makes {@link Main} replay this fixture.
+   */
+  String source() {
+    return "replay:" + this.archive;
+  }
+
+  /**
+   * Replaces the versions listed in the metadata of a Quilt Maven artifact, such as {@code org/quiltmc/quilt-installer}.
+   */
+  void publish(String artifact, String... versions) throws IOException {
+    this.responses.put(Constants.BASE_MAVEN_URL + artifact + "/maven-metadata.xml", metadata(versions));
+    this.write();
+  }
+
+  private void write() throws IOException {
+    try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(this.archive))) {
+      for (Map.Entry<String, String> response : this.responses.entrySet()) {
+        zip.putNextEntry(new ZipEntry(response.getKey().substring("https://".length())));
+        zip.write(response.getValue().getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  /**
+   * Gets the hash of every file in the storage by path.
+   */
+  static Map<String, byte[]> snapshot(MemoryStorage storage) {
+    Map<String, byte[]> files = new HashMap<>();
+    for (StoredFile file : storage.list()) {
+      files.put(file.path(), file.hash());
+    }
+    return files;
+  }
+
+  private static String metadata(String... versions) {
+    StringBuilder xml = new StringBuilder("<metadata><versioning><versions>");
+    for (String version : versions) {
+      xml.append("<version>").append(version).append("</version>");
+    }
+    return xml.append("</versions></versioning></metadata>").toString();
+  }
+}
@@ -0,0 +1,139 @@
+package org.quiltmc;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class UpstreamSnapshotTest {
+  @Test
+  public void recordsAndReplays() throws IOException {
+    Path archive = Files.createTempDirectory("quilt-meta-snapshot").resolve("snapshot.zip");
+    UpstreamSnapshot recording = UpstreamSnapshot.record(fakeUpstream(), archive);
+
+    assertArrayEquals(bytes("<metadata/>"), recording.get("https://maven.quiltmc.org/maven-metadata.xml"));
+    assertArrayEquals(bytes("{}"), recording.getImmutable("https://maven.quiltmc.org/loader.json"));
+    recording.save();
+    byte[] saved = Files.readAllBytes(archive);
+
+    UpstreamSnapshot replay = UpstreamSnapshot.replay(archive);
+    assertArrayEquals(bytes("<metadata/>"), replay.get("https://maven.quiltmc.org/maven-metadata.xml"));
+    assertArrayEquals(bytes("{}"), replay.getImmutable("https://maven.quiltmc.org/loader.json"));
+    assertThrows(() -> replay.get("https://maven.quiltmc.org/other.xml"));
+
+    // Same responses, same archive
+    recording.save();
+    assertArrayEquals(saved, Files.readAllBytes(archive));
+  }
+
+  @Test
+  public void migratesTheLegacyManifest() throws IOException {
+    UpstreamFixture upstream = new UpstreamFixture();
+    MemoryStorage storage = new MemoryStorage();
+
+    // An empty manifest in the legacy format, which is migrated and then deleted
+    ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+    new GZIPOutputStream(legacy).close();
+    storage.put(Constants.LEGACY_MANIFEST_FILE, legacy.toByteArray(), "application/octet-stream");
+
+    assertTrue(new Main(storage, upstream.source()).build());
+    assertNotNull(storage.get("v3/versions/loader/1.19.2/0.17.1/profile/json"));
+    assertNotNull(storage.get("v3/versions/quilt-mappings/1.19.2"));
+    assertNull(storage.get(Constants.LEGACY_MANIFEST_FILE));
+    assertNotNull(storage.get(Constants.MANIFEST_FILE));
+  }
+
+  @Test
+  public void unchangedUpstreamLeavesTheStorageAlone() throws IOException {
+    UpstreamFixture upstream = new UpstreamFixture();
+    MemoryStorage storage = new MemoryStorage();
+    assertTrue(new Main(storage, upstream.source()).build());
+
+    // Nothing upstream changed, so the second run stops after probing
+    Map<String, byte[]> first = UpstreamFixture.snapshot(storage);
+    byte[] fingerprints = storage.get(Constants.FINGERPRINTS_FILE);
+    assertTrue(new Main(storage, upstream.source()).build());
+    assertEquals(first.keySet(), UpstreamFixture.snapshot(storage).keySet());
+    assertArrayEquals(fingerprints, storage.get(Constants.FINGERPRINTS_FILE));
+  }
+
+  @Test
+  public void installerReleaseKeepsTheLoaderFiles() throws IOException {
+    UpstreamFixture upstream = new UpstreamFixture();
+    MemoryStorage storage = new MemoryStorage();
+    assertTrue(new Main(storage, upstream.source()).build());
+    Map<String, byte[]> first = UpstreamFixture.snapshot(storage);
+
+    // A new installer release leaves every loader directory as it was, so they are carried over as a whole
+    upstream.publish("org/quiltmc/quilt-installer", "0.5.0", "0.5.1");
+    assertTrue(new Main(storage, upstream.source()).build());
+    Map<String, byte[]> second = UpstreamFixture.snapshot(storage);
+    assertEquals(first.keySet(), second.keySet());
+    assertTrue(Manifest.read(storage.get(Constants.FINGERPRINTS_FILE)).contains("v3/versions/loader/1.19.2/"));
+    for (Map.Entry<String, byte[]> file : first.entrySet()) {
+      if (file.getKey().startsWith("v3/versions/loader/")) {
+        assertArrayEquals(file.getValue(), second.get(file.getKey()));
+      }
+    }
+  }
+
+  @Test
+  public void loaderReleaseIsGenerated() throws IOException {
+    UpstreamFixture upstream = new UpstreamFixture();
+    MemoryStorage storage = new MemoryStorage();
+    assertTrue(new Main(storage, upstream.source()).build());
+
+    // A new loader release changes the loader metadata, so the next run generates it for every game version
+    upstream.publish("org/quiltmc/quilt-loader", "0.17.0", "0.17.1", "0.17.2");
+    assertTrue(new Main(storage, upstream.source()).build());
+    assertNotNull(storage.get("v3/versions/loader/1.19.2/0.17.2/profile/json"));
+    assertNotNull(storage.get("v3/versions/loader/1.18.2/0.17.2/server/json"));
+    JsonObject latest = JsonParser.parseString(new String(storage.get("v3/versions/latest"), StandardCharsets.UTF_8)).getAsJsonObject();
+    assertEquals("0.17.2", latest.getAsJsonObject("loader").get("version").getAsString());
+  }
+
+  private static Upstream fakeUpstream() {
+    return new Upstream() {
+      @Override
+      public byte[] get(String url) {
+        return bytes("<metadata/>");
+      }
+
+      @Override
+      public byte[] getImmutable(String url) {
+        return bytes("{}");
+      }
+
+      @Override
+      public String getStats() {
+        return "fake";
+      }
+    };
+  }
+
+  private static void assertThrows(IoRunnable runnable) {
+    try {
+      runnable.run();
+    } catch (IOException e) {
+      return;
+    }
+    fail("Expected an IOException");
+  }
+
+  private interface IoRunnable {
+    void run() throws IOException;
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,54 @@
+package org.quiltmc;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class VersionSummaryTest {
+  private final List<GameVersion> game = List.of(new GameVersion("23w05a", false), new GameVersion("1.19.3", true), new GameVersion("1.19.2", true));
+  private final List<LoaderVersion> loader = List.of(new LoaderVersion(".", 1, "org.quiltmc:quilt-loader:0.18.1-beta.1", "0.18.1-beta.1"),
+      new LoaderVersion(".", 0, "org.quiltmc:quilt-loader:0.18.0", "0.18.0"));
+  private final List<InstallerVersion> installer = List.of(new InstallerVersion("https://example.com/beta.jar", "org.quiltmc:quilt-installer:0.6.0-beta.1", "0.6.0-beta.1"),
+      new InstallerVersion("https://example.com/release.jar", "org.quiltmc:quilt-installer:0.5.1", "0.5.1"));
+
+  @Test
+  public void latestTakesTheNewestOfEach() {
+    JsonObject latest = JsonParser.parseString(VersionSummary.latest(this.game, this.loader, this.installer).toJson()).getAsJsonObject();
+
+    assertEquals(JsonParser.parseString(this.game.get(0).toJson()), latest.get("game"));
+    assertEquals(JsonParser.parseString(this.loader.get(0).toJson()), latest.get("loader"));
+    assertEquals(JsonParser.parseString(this.installer.get(0).toJson()), latest.get("installer"));
+  }
+
+  @Test
+  public void stableSkipsSnapshotsAndPreReleases() {
+    JsonObject stable = JsonParser.parseString(VersionSummary.stable(this.game, this.loader, this.installer).toJson()).getAsJsonObject();
+
+    assertEquals("1.19.3", stable.getAsJsonObject("game").get("version").getAsString());
+    assertEquals("0.18.0", stable.getAsJsonObject("loader").get("version").getAsString());
+    assertEquals("0.5.1", stable.getAsJsonObject("installer").get("version").getAsString());
+  }
+
+  @Test
+  public void leavesOutVersionsWithNothingStable() {
+    VersionSummary summary = VersionSummary.stable(this.game, this.loader.subList(0, 1), List.of());
+    JsonObject stable = JsonParser.parseString(summary.toJson()).getAsJsonObject();
+
+    assertNull(summary.loader());
+    assertNull(summary.installer());
+    assertEquals(Set.of("game"), stable.keySet());
+  }
+
+  @Test
+  public void onlyReleasesAreStable() {
+    assertTrue(VersionSummary.isStable("0.18.0"));
+    assertTrue(VersionSummary.isStable("0.18.0+build.3"));
+    assertFalse(VersionSummary.isStable("0.18.1-beta.1"));
+    assertFalse(VersionSummary.isStable("0.6.0-rc.2"));
+  }
+}